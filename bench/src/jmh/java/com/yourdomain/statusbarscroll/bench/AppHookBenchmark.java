@@ -0,0 +1,126 @@
+package com.yourdomain.statusbarscroll.bench;
+
+import com.yourdomain.statusbarscroll.core.ClassKindCache;
+import com.yourdomain.statusbarscroll.core.HookPolicy;
+import com.yourdomain.statusbarscroll.core.ScrollKind;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// What per-package hooking costs and saves. decide is the once-per-process allow/deny
+// decision over a list of the given size; construct and constructHooked are one scroller
+// construction without and with the registering hook on its init method, the difference
+// being what every construction in an unhooked process no longer pays (see HookDispatch).
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AppHookBenchmark {
+
+    private static final int PACKAGES = 1000;
+    private static final String[] NEVER_HOOKED = {"android", "com.android.systemui", "com.yourdomain.statusbarscroll"};
+
+    // The prefs as a process reads them: one list, used as allowlist or denylist
+    @State(Scope.Thread)
+    public static class Lists {
+        @Param({"denylist", "allowlist"})
+        public String mode;
+
+        @Param({"0", "20", "200"})
+        public int listSize;
+
+        String[] packages;
+        Set<String> hooked;
+        Set<String> excluded;
+
+        @Setup
+        public void setUp() {
+            // the listed packages are the even ones, so about half the decisions match
+            Set<String> listed = new HashSet<>();
+            for (int i = 0; i < listSize; i++) listed.add("com.example.app" + (i * 2));
+            packages = new String[PACKAGES];
+            for (int i = 0; i < PACKAGES; i++) packages[i] = "com.example.app" + (i % Math.max(1, listSize * 2));
+            boolean allowlist = HookPolicy.MODE_ALLOWLIST.equals(mode);
+            hooked = allowlist ? listed : null;
+            excluded = allowlist ? null : listed;
+        }
+    }
+
+    private HookDispatch dispatch;
+    private Object activityContext;
+
+    // Stands in for a scroller: a few fields its init method sets, like initAbsListView does
+    public static class Scroller {
+        final Object context;
+        boolean clickable;
+        boolean focusable;
+        int scrollBarStyle;
+
+        public Scroller(Object context) {
+            this.context = context;
+        }
+
+        public void init() {
+            clickable = true;
+            focusable = true;
+            scrollBarStyle = 1;
+        }
+    }
+
+    private static final class Activity { }
+
+    private static final ClassKindCache KINDS = new ClassKindCache(c -> ScrollKind.ABS_LIST_VIEW);
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        activityContext = new Activity();
+        dispatch = new HookDispatch(Scroller.class.getMethod("init"));
+        // what AppHooks.REGISTER checks before it registers the view
+        dispatch.add(new HookDispatch.Callback() {
+            @Override
+            public void before(HookDispatch.Param param) { }
+
+            @Override
+            public void after(HookDispatch.Param param) {
+                Scroller s = (Scroller) param.thisObject;
+                if (!(s.context instanceof Activity)) return;
+                if (KINDS.kindOf(s.getClass()) == ScrollKind.NONE) return;
+                s.scrollBarStyle++;
+            }
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PACKAGES)
+    public int decide(Lists lists) {
+        int hooked = 0;
+        for (String pkg : lists.packages) {
+            if (HookPolicy.isHooked(pkg, NEVER_HOOKED, lists.mode, lists.hooked, lists.excluded)) hooked++;
+        }
+        return hooked;
+    }
+
+    @Benchmark
+    public Scroller construct() {
+        Scroller s = new Scroller(activityContext);
+        s.init();
+        return s;
+    }
+
+    @Benchmark
+    public Scroller constructHooked() {
+        Scroller s = new Scroller(activityContext);
+        dispatch.call(s);
+        return s;
+    }
+}
@@ -0,0 +1,50 @@
+package com.yourdomain.statusbarscroll.bench;
+
+import com.yourdomain.statusbarscroll.core.TapDetector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+// Per-event cost of the tap detector on the status bar's touch listener, in each trigger
+// mode, over a generated stream of taps, double taps, drags and cancelled touches.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TapDetectorBenchmark {
+
+    private static final int EVENTS = 10000;
+
+    @Param({"0", "1", "2"}) // TapDetector.MODE_DOUBLE_TAP, MODE_SINGLE_TAP, MODE_LONG_PRESS
+    public int mode;
+
+    private TouchStreams stream;
+    private TapDetector detector;
+
+    @Setup
+    public void setUp() {
+        stream = TouchStreams.generate(7, EVENTS);
+        detector = new TapDetector(mode, 16f, 100f, 300, 500);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public int feed() {
+        TouchStreams s = stream;
+        TapDetector d = detector;
+        int fired = 0;
+        for (int i = 0; i < EVENTS; i++) {
+            if (d.onTouchEvent(s.actions[i], s.xs[i], s.ys[i], s.times[i])) fired++;
+            if (d.checkLongPress(s.times[i])) fired++;
+        }
+        return fired;
+    }
+}
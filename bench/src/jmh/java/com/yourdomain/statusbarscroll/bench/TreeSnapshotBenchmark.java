@@ -0,0 +1,65 @@
+package com.yourdomain.statusbarscroll.bench;
+
+import com.yourdomain.statusbarscroll.core.TreeSnapshot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+// The selection hot path of a tap: the UI-thread capture of a window's hierarchy and the
+// worker-thread scoring of it, apart and together, over generated trees of a few sizes and
+// depths. The snapshot is reused between operations like TargetSelector reuses its own,
+// so the numbers are for a warm capture that allocates nothing.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TreeSnapshotBenchmark {
+
+    @Param({"500", "2000", "5000"})
+    public int nodes;
+
+    @Param({"8", "24", "64"})
+    public int depth;
+
+    private SyntheticTree.Node root;
+    private TreeSnapshot<SyntheticTree.Node> snapshot;
+
+    @Setup
+    public void setUp() {
+        root = SyntheticTree.generate(42, nodes, depth, 40);
+        snapshot = new TreeSnapshot<>(SyntheticTree.ADAPTER);
+        // the budget would cut the biggest trees short, and then measure the budget
+        snapshot.setNodeBudget(Integer.MAX_VALUE);
+        snapshot.setTimeBudgetNanos(Long.MAX_VALUE);
+        capture();
+    }
+
+    @Benchmark
+    public int capture() {
+        snapshot.reset();
+        snapshot.capture(root, 0, 0, true);
+        return snapshot.size();
+    }
+
+    // Scores the rows captured in setUp again; score() only reads and rewrites its own results
+    @Benchmark
+    public long score() {
+        snapshot.score();
+        return snapshot.getBestScore();
+    }
+
+    @Benchmark
+    public long captureAndScore() {
+        snapshot.reset();
+        snapshot.capture(root, 0, 0, true);
+        snapshot.score();
+        return snapshot.getBestScore();
+    }
+}
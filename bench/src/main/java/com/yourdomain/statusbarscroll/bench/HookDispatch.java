@@ -0,0 +1,55 @@
+package com.yourdomain.statusbarscroll.bench;
+
+import java.lang.reflect.Method;
+
+// Desktop model of what an Xposed hook adds to every call of the hooked method: the bridge
+// takes a snapshot of the callbacks, allocates the param object and the argument array,
+// runs the before callbacks, calls the original reflectively and runs the after callbacks
+// in reverse. The real bridge also goes through the runtime's method replacement and a
+// try/catch per callback, so this is a lower bound of the cost an unhooked process saves.
+public final class HookDispatch {
+
+    public interface Callback {
+        void before(Param param);
+
+        void after(Param param);
+    }
+
+    public static final class Param {
+        public Method method;
+        public Object thisObject;
+        public Object[] args;
+        public Object result;
+        public Throwable throwable;
+    }
+
+    private final Method original;
+    private volatile Callback[] callbacks = new Callback[0];
+
+    public HookDispatch(Method original) {
+        this.original = original;
+        original.setAccessible(true);
+    }
+
+    public synchronized void add(Callback callback) {
+        Callback[] next = java.util.Arrays.copyOf(callbacks, callbacks.length + 1);
+        next[callbacks.length] = callback;
+        callbacks = next;
+    }
+
+    public Object call(Object thisObject, Object... args) {
+        Callback[] snapshot = callbacks;
+        Param param = new Param();
+        param.method = original;
+        param.thisObject = thisObject;
+        param.args = args;
+        for (Callback c : snapshot) c.before(param);
+        try {
+            param.result = original.invoke(thisObject, args);
+        } catch (Throwable t) {
+            param.throwable = t;
+        }
+        for (int i = snapshot.length - 1; i >= 0; i--) snapshot[i].after(param);
+        return param.result;
+    }
+}
@@ -0,0 +1,176 @@
+package com.yourdomain.statusbarscroll.bench;
+
+import com.yourdomain.statusbarscroll.core.ScrollKind;
+import com.yourdomain.statusbarscroll.core.SnapshotAdapter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+// Plain-object stand-in for a window's view hierarchy, with an adapter that answers like
+// ViewTreeAdapter does for real views. Trees are generated from a seed, so a benchmark run
+// and a test see the same shape every time.
+public final class SyntheticTree {
+
+    // Screen of a typical phone, in pixels
+    public static final int SCREEN_WIDTH = 1080;
+    public static final int SCREEN_HEIGHT = 2400;
+
+    // Below this, children overlap their parent instead of being stacked in it
+    private static final int MIN_ROW_HEIGHT = 8;
+
+    public static final class Node {
+        public final Node parent;
+        public Node[] children = new Node[0];
+        public int childCount;
+        public int left, top, right, bottom;
+        public int scrollX, scrollY;
+        public int kind = ScrollKind.NONE;
+        public boolean visible = true;
+        public boolean focused;
+        public boolean elevated;
+        public boolean horizontalOnly;
+        final int depth;
+
+        public Node(Node parent, int left, int top, int right, int bottom) {
+            this.parent = parent;
+            this.depth = parent != null ? parent.depth + 1 : 0;
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+        }
+
+        public Node add(Node child) {
+            if (childCount == children.length) children = Arrays.copyOf(children, Math.max(4, childCount * 2));
+            children[childCount++] = child;
+            return this;
+        }
+    }
+
+    private SyntheticTree() { }
+
+    // A tree of exactly nodeCount nodes whose deepest branch is depth levels below the root.
+    // One spine is built to full depth, the rest of the nodes hang off random non-scrollable
+    // nodes above it; about one leaf in scrollableEvery becomes a scroller (at least one),
+    // a quarter of those horizontal-only carousels.
+    public static Node generate(long seed, int nodeCount, int depth, int scrollableEvery) {
+        Random random = new Random(seed);
+        Node root = new Node(null, 0, 0, SCREEN_WIDTH, SCREEN_HEIGHT);
+        ArrayList<Node> all = new ArrayList<>(nodeCount);
+        all.add(root);
+        Node spine = root;
+        for (int i = 1; i < Math.min(depth + 1, nodeCount); i++) {
+            Node child = new Node(spine, 0, 0, 0, 0);
+            spine.add(child);
+            all.add(child);
+            spine = child;
+        }
+        while (all.size() < nodeCount) {
+            Node parent = all.get(random.nextInt(all.size()));
+            if (parent.depth >= depth) continue;
+            Node child = new Node(parent, 0, 0, 0, 0);
+            parent.add(child);
+            all.add(child);
+        }
+        layout(root);
+
+        int scrollables = 0;
+        Node lastLeaf = root;
+        for (Node n : all) {
+            if (n.childCount > 0) continue;
+            lastLeaf = n;
+            if (random.nextInt(Math.max(1, scrollableEvery)) != 0) continue;
+            makeScrollable(n, random);
+            scrollables++;
+        }
+        if (scrollables == 0) makeScrollable(lastLeaf, random);
+        all.get(random.nextInt(all.size())).focused = true;
+        return root;
+    }
+
+    private static void makeScrollable(Node n, Random random) {
+        n.kind = random.nextBoolean() ? ScrollKind.RECYCLER_VIEW : ScrollKind.SCROLL_VIEW;
+        n.horizontalOnly = random.nextInt(4) == 0;
+        n.elevated = random.nextInt(8) == 0;
+    }
+
+    // Stacks children top to bottom like a vertical LinearLayout, or overlaps them like a
+    // FrameLayout when the rows would get too thin
+    private static void layout(Node n) {
+        int width = n.right - n.left;
+        int height = n.bottom - n.top;
+        int rows = height / Math.max(1, n.childCount) >= MIN_ROW_HEIGHT ? n.childCount : 1;
+        for (int i = 0; i < n.childCount; i++) {
+            Node c = n.children[i];
+            int row = rows == 1 ? 0 : i;
+            c.left = 0;
+            c.right = width;
+            c.top = row * height / rows;
+            c.bottom = (row + 1) * height / rows;
+            layout(c);
+        }
+    }
+
+    public static int countNodes(Node root) {
+        int count = 1;
+        for (int i = 0; i < root.childCount; i++) count += countNodes(root.children[i]);
+        return count;
+    }
+
+    // Answers like ViewTreeAdapter: geometry in the parent's content coordinates
+    public static final SnapshotAdapter<Node> ADAPTER = new SnapshotAdapter<Node>() {
+        @Override
+        public int childCount(Node node) {
+            return node.childCount;
+        }
+
+        @Override
+        public Node childAt(Node node, int index) {
+            return node.children[index];
+        }
+
+        @Override
+        public boolean isWorthVisiting(Node n) {
+            return n.visible && n.right > n.left && n.bottom > n.top;
+        }
+
+        @Override
+        public boolean isInsideParent(Node parent, Node child) {
+            int left = parent.scrollX;
+            int top = parent.scrollY;
+            return child.right > left && child.left < left + (parent.right - parent.left)
+                    && child.bottom > top && child.top < top + (parent.bottom - parent.top);
+        }
+
+        @Override
+        public int scrollKind(Node node) {
+            return node.kind;
+        }
+
+        @Override
+        public void readGeometry(Node n, int[] out, int offset) {
+            out[offset] = n.left;
+            out[offset + 1] = n.top;
+            out[offset + 2] = n.right;
+            out[offset + 3] = n.bottom;
+            out[offset + 4] = n.scrollX;
+            out[offset + 5] = n.scrollY;
+        }
+
+        @Override
+        public boolean isFocusedNode(Node n) {
+            return n.focused;
+        }
+
+        @Override
+        public boolean hasElevation(Node n) {
+            return n.elevated;
+        }
+
+        @Override
+        public boolean isHorizontalOnly(Node n) {
+            return n.horizontalOnly;
+        }
+    };
+}
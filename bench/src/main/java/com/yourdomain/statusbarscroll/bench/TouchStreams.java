@@ -0,0 +1,73 @@
+package com.yourdomain.statusbarscroll.bench;
+
+import com.yourdomain.statusbarscroll.core.TapDetector;
+
+import java.util.Random;
+
+// Synthetic status bar touch streams, as parallel arrays ready to feed a TapDetector:
+// a seeded mix of clean taps, quick double taps, drags that pull the shade down and
+// cancelled touches, with MOVE events in between like a real digitizer reports them.
+public final class TouchStreams {
+
+    public final int[] actions;
+    public final float[] xs;
+    public final float[] ys;
+    public final long[] times;
+    public int size;
+
+    private TouchStreams(int capacity) {
+        actions = new int[capacity];
+        xs = new float[capacity];
+        ys = new float[capacity];
+        times = new long[capacity];
+    }
+
+    // About eventCount events; each gesture is written whole, so a few more may be added
+    public static TouchStreams generate(long seed, int eventCount) {
+        Random random = new Random(seed);
+        TouchStreams s = new TouchStreams(eventCount + 64);
+        long t = 1000;
+        while (s.size < eventCount) {
+            float x = 50 + random.nextInt(SyntheticTree.SCREEN_WIDTH - 100);
+            float y = 10 + random.nextInt(40);
+            switch (random.nextInt(4)) {
+                case 0: // single tap, a little jitter
+                    t = s.tap(random, x, y, t);
+                    break;
+                case 1: // double tap
+                    t = s.tap(random, x, y, t);
+                    t = s.tap(random, x + random.nextInt(10), y, t + 80 + random.nextInt(120));
+                    break;
+                case 2: // drag down: opens the shade, never a tap
+                    s.add(TapDetector.ACTION_DOWN, x, y, t);
+                    for (int i = 1; i <= 12; i++) s.add(TapDetector.ACTION_MOVE, x, y + i * 40, t += 8);
+                    s.add(TapDetector.ACTION_UP, x, y + 480, t += 8);
+                    break;
+                default: // second finger lands mid-touch
+                    s.add(TapDetector.ACTION_DOWN, x, y, t);
+                    s.add(TapDetector.ACTION_POINTER_DOWN, x + 300, y, t += 16);
+                    s.add(TapDetector.ACTION_CANCEL, x, y, t += 16);
+                    break;
+            }
+            t += 300 + random.nextInt(1500);
+        }
+        return s;
+    }
+
+    private long tap(Random random, float x, float y, long t) {
+        add(TapDetector.ACTION_DOWN, x, y, t);
+        for (int i = 0, moves = random.nextInt(3); i < moves; i++) {
+            add(TapDetector.ACTION_MOVE, x + random.nextInt(5) - 2, y + random.nextInt(5) - 2, t += 8);
+        }
+        add(TapDetector.ACTION_UP, x, y, t += 40 + random.nextInt(60));
+        return t;
+    }
+
+    private void add(int action, float x, float y, long time) {
+        actions[size] = action;
+        xs[size] = x;
+        ys[size] = y;
+        times[size] = time;
+        size++;
+    }
+}
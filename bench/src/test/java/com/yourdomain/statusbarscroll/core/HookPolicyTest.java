@@ -0,0 +1,44 @@
+package com.yourdomain.statusbarscroll.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HookPolicyTest {
+
+    private static final String[] NEVER = {"android", "com.android.systemui"};
+    private static final Set<String> MAPS = Collections.singleton("com.example.maps");
+
+    @Test
+    void theDenylistHooksEveryAppButTheExcludedOnes() {
+        assertTrue(HookPolicy.isHooked("com.example.mail", NEVER, HookPolicy.MODE_DENYLIST, null, MAPS));
+        assertFalse(HookPolicy.isHooked("com.example.maps", NEVER, HookPolicy.MODE_DENYLIST, null, MAPS));
+        // the hooked list doesn't matter here
+        assertFalse(HookPolicy.isHooked("com.example.maps", NEVER, HookPolicy.MODE_DENYLIST, MAPS, MAPS));
+    }
+
+    @Test
+    void theAllowlistHooksOnlyTheListedApps() {
+        assertTrue(HookPolicy.isHooked("com.example.maps", NEVER, HookPolicy.MODE_ALLOWLIST, MAPS, null));
+        assertFalse(HookPolicy.isHooked("com.example.mail", NEVER, HookPolicy.MODE_ALLOWLIST, MAPS, null));
+        assertFalse(HookPolicy.isHooked("com.example.maps", NEVER, HookPolicy.MODE_ALLOWLIST, null, null));
+    }
+
+    @Test
+    void missingPrefsMeanAnEmptyDenylist() {
+        assertTrue(HookPolicy.isHooked("com.example.mail", NEVER, null, null, null));
+        assertTrue(HookPolicy.isHooked("com.example.mail", NEVER, "something else", null, null));
+    }
+
+    @Test
+    void neverHookedPackagesWinOverEveryList() {
+        Set<String> systemUi = Collections.singleton("com.android.systemui");
+        assertFalse(HookPolicy.isHooked("com.android.systemui", NEVER, HookPolicy.MODE_ALLOWLIST, systemUi, null));
+        assertFalse(HookPolicy.isHooked("android", NEVER, null, null, null));
+        assertFalse(HookPolicy.isHooked(null, NEVER, null, null, null));
+    }
+}
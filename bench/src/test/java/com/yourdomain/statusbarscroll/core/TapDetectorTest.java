@@ -0,0 +1,138 @@
+package com.yourdomain.statusbarscroll.core;
+
+import com.yourdomain.statusbarscroll.bench.TouchStreams;
+
+import org.junit.jupiter.api.Test;
+
+import static com.yourdomain.statusbarscroll.core.TapDetector.ACTION_CANCEL;
+import static com.yourdomain.statusbarscroll.core.TapDetector.ACTION_DOWN;
+import static com.yourdomain.statusbarscroll.core.TapDetector.ACTION_MOVE;
+import static com.yourdomain.statusbarscroll.core.TapDetector.ACTION_POINTER_DOWN;
+import static com.yourdomain.statusbarscroll.core.TapDetector.ACTION_UP;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TapDetectorTest {
+
+    private static final float SLOP = 16;
+    private static final float DOUBLE_TAP_SLOP = 100;
+    private static final long DOUBLE_TAP_TIMEOUT = 300;
+    private static final long LONG_PRESS_TIMEOUT = 500;
+
+    private static TapDetector detector(int mode) {
+        return new TapDetector(mode, SLOP, DOUBLE_TAP_SLOP, DOUBLE_TAP_TIMEOUT, LONG_PRESS_TIMEOUT);
+    }
+
+    @Test
+    void singleTapFiresOnUp() {
+        TapDetector d = detector(TapDetector.MODE_SINGLE_TAP);
+        assertFalse(d.onTouchEvent(ACTION_DOWN, 100, 20, 1000));
+        assertFalse(d.onTouchEvent(ACTION_MOVE, 105, 22, 1010));
+        assertTrue(d.onTouchEvent(ACTION_UP, 105, 22, 1080));
+    }
+
+    @Test
+    void singleTapIgnoresDragsPastTheSlop() {
+        TapDetector d = detector(TapDetector.MODE_SINGLE_TAP);
+        d.onTouchEvent(ACTION_DOWN, 100, 20, 1000);
+        d.onTouchEvent(ACTION_MOVE, 100, 20 + SLOP + 1, 1010);
+        // back inside the slop doesn't make it a tap again
+        d.onTouchEvent(ACTION_MOVE, 100, 20, 1020);
+        assertFalse(d.onTouchEvent(ACTION_UP, 100, 20, 1080));
+    }
+
+    @Test
+    void singleTapIgnoresTouchesHeldForALongPress() {
+        TapDetector d = detector(TapDetector.MODE_SINGLE_TAP);
+        d.onTouchEvent(ACTION_DOWN, 100, 20, 1000);
+        assertFalse(d.onTouchEvent(ACTION_UP, 100, 20, 1000 + LONG_PRESS_TIMEOUT));
+    }
+
+    @Test
+    void doubleTapFiresOnTheSecondDown() {
+        TapDetector d = detector(TapDetector.MODE_DOUBLE_TAP);
+        d.onTouchEvent(ACTION_DOWN, 100, 20, 1000);
+        assertFalse(d.onTouchEvent(ACTION_UP, 100, 20, 1060));
+        assertTrue(d.onTouchEvent(ACTION_DOWN, 130, 25, 1200));
+        assertFalse(d.onTouchEvent(ACTION_UP, 130, 25, 1260));
+    }
+
+    @Test
+    void doubleTapNeedsBothTapsCloseInTimeAndPlace() {
+        TapDetector late = detector(TapDetector.MODE_DOUBLE_TAP);
+        late.onTouchEvent(ACTION_DOWN, 100, 20, 1000);
+        late.onTouchEvent(ACTION_UP, 100, 20, 1060);
+        assertFalse(late.onTouchEvent(ACTION_DOWN, 100, 20, 1060 + DOUBLE_TAP_TIMEOUT + 1));
+
+        TapDetector far = detector(TapDetector.MODE_DOUBLE_TAP);
+        far.onTouchEvent(ACTION_DOWN, 100, 20, 1000);
+        far.onTouchEvent(ACTION_UP, 100, 20, 1060);
+        assertFalse(far.onTouchEvent(ACTION_DOWN, 100 + DOUBLE_TAP_SLOP + 1, 20, 1200));
+    }
+
+    @Test
+    void aConsumedDoubleTapDoesNotStartAnotherPair() {
+        TapDetector d = detector(TapDetector.MODE_DOUBLE_TAP);
+        d.onTouchEvent(ACTION_DOWN, 100, 20, 1000);
+        d.onTouchEvent(ACTION_UP, 100, 20, 1050);
+        assertTrue(d.onTouchEvent(ACTION_DOWN, 100, 20, 1150));
+        d.onTouchEvent(ACTION_UP, 100, 20, 1200);
+        assertFalse(d.onTouchEvent(ACTION_DOWN, 100, 20, 1300));
+    }
+
+    @Test
+    void aSecondFingerOrCancelEndsTheGesture() {
+        TapDetector single = detector(TapDetector.MODE_SINGLE_TAP);
+        single.onTouchEvent(ACTION_DOWN, 100, 20, 1000);
+        single.onTouchEvent(ACTION_POINTER_DOWN, 400, 20, 1010);
+        assertFalse(single.onTouchEvent(ACTION_UP, 100, 20, 1050));
+
+        TapDetector twice = detector(TapDetector.MODE_DOUBLE_TAP);
+        twice.onTouchEvent(ACTION_DOWN, 100, 20, 1000);
+        twice.onTouchEvent(ACTION_UP, 100, 20, 1050);
+        twice.onTouchEvent(ACTION_CANCEL, 100, 20, 1100);
+        assertFalse(twice.onTouchEvent(ACTION_DOWN, 100, 20, 1150));
+    }
+
+    @Test
+    void longPressFiresOnceAfterTheTimeout() {
+        TapDetector d = detector(TapDetector.MODE_LONG_PRESS);
+        d.onTouchEvent(ACTION_DOWN, 100, 20, 1000);
+        assertFalse(d.checkLongPress(1000 + LONG_PRESS_TIMEOUT - 1));
+        assertTrue(d.checkLongPress(1000 + LONG_PRESS_TIMEOUT));
+        assertFalse(d.checkLongPress(1000 + LONG_PRESS_TIMEOUT + 100));
+        assertFalse(d.onTouchEvent(ACTION_UP, 100, 20, 1000 + LONG_PRESS_TIMEOUT + 200));
+    }
+
+    @Test
+    void longPressIgnoresAMovedFinger() {
+        TapDetector d = detector(TapDetector.MODE_LONG_PRESS);
+        d.onTouchEvent(ACTION_DOWN, 100, 20, 1000);
+        d.onTouchEvent(ACTION_MOVE, 100 + SLOP + 1, 20, 1100);
+        assertFalse(d.checkLongPress(1000 + LONG_PRESS_TIMEOUT));
+    }
+
+    @Test
+    void otherModesNeverReportALongPress() {
+        TapDetector d = detector(TapDetector.MODE_SINGLE_TAP);
+        d.onTouchEvent(ACTION_DOWN, 100, 20, 1000);
+        assertFalse(d.checkLongPress(1000 + LONG_PRESS_TIMEOUT));
+    }
+
+    // The benchmark's generated stream: the same seed has to fire the same number of times
+    @Test
+    void generatedStreamIsRepeatable() {
+        assertEquals(fire(TouchStreams.generate(7, 2000)), fire(TouchStreams.generate(7, 2000)));
+        assertTrue(fire(TouchStreams.generate(7, 2000)) > 0);
+    }
+
+    private static int fire(TouchStreams s) {
+        TapDetector d = detector(TapDetector.MODE_SINGLE_TAP);
+        int fired = 0;
+        for (int i = 0; i < s.size; i++) {
+            if (d.onTouchEvent(s.actions[i], s.xs[i], s.ys[i], s.times[i])) fired++;
+        }
+        return fired;
+    }
+}
@@ -0,0 +1,201 @@
+package com.yourdomain.statusbarscroll.core;
+
+import com.yourdomain.statusbarscroll.bench.SyntheticTree;
+import com.yourdomain.statusbarscroll.bench.SyntheticTree.Node;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TreeSnapshotTest {
+
+    private final TreeSnapshot<Node> snapshot = new TreeSnapshot<>(SyntheticTree.ADAPTER);
+
+    private static Node root() {
+        return new Node(null, 0, 0, 1000, 2000);
+    }
+
+    private static Node child(Node parent, int left, int top, int right, int bottom) {
+        Node n = new Node(parent, left, top, right, bottom);
+        parent.add(n);
+        return n;
+    }
+
+    private static Node scroller(Node parent, int left, int top, int right, int bottom) {
+        Node n = child(parent, left, top, right, bottom);
+        n.kind = ScrollKind.RECYCLER_VIEW;
+        return n;
+    }
+
+    private Node best(Node... roots) {
+        snapshot.reset();
+        for (Node r : roots) snapshot.capture(r, 0, 0, false);
+        snapshot.score();
+        return snapshot.getBest() >= 0 ? snapshot.candidateAt(snapshot.getBest()) : null;
+    }
+
+    @Test
+    void theLargestVisibleScrollerWins() {
+        Node root = root();
+        scroller(root, 0, 0, 1000, 300);
+        Node list = scroller(root, 0, 300, 1000, 2000);
+        assertSame(list, best(root));
+        assertEquals(1000L * 1700, snapshot.getBestScore());
+    }
+
+    @Test
+    void nothingScrollableMeansNoBest() {
+        Node root = root();
+        child(root, 0, 0, 1000, 2000);
+        assertNull(best(root));
+        assertEquals(0, snapshot.getCandidateCount());
+    }
+
+    @Test
+    void aHorizontalOnlyCarouselLosesToASmallerList() {
+        Node root = root();
+        Node carousel = scroller(root, 0, 0, 1000, 1200);
+        carousel.horizontalOnly = true;
+        Node list = scroller(root, 0, 1200, 1000, 2000);
+        assertSame(list, best(root));
+
+        // but it still counts when it is all there is
+        Node alone = root();
+        Node only = scroller(alone, 0, 0, 1000, 400);
+        only.horizontalOnly = true;
+        assertSame(only, best(alone));
+    }
+
+    @Test
+    void focusAndElevationBeatASizeAdvantage() {
+        Node root = root();
+        scroller(root, 0, 0, 1000, 2000);
+        Node sheet = scroller(root, 0, 900, 1000, 2000);
+        sheet.elevated = true;
+        assertSame(sheet, best(root));
+
+        Node other = root();
+        scroller(other, 0, 0, 1000, 2000);
+        Node field = child(other, 0, 900, 1000, 2000);
+        Node focused = scroller(field, 0, 0, 1000, 1100);
+        child(focused, 0, 0, 1000, 100).focused = true;
+        // the focus is inside a scroller, which isn't captured: only the node itself counts
+        assertSame(other.children[0], best(other));
+        focused.focused = true;
+        assertSame(focused, best(other));
+    }
+
+    @Test
+    void aPagedAwayPageScoresNothing() {
+        Node root = root();
+        Node pager = child(root, 0, 100, 1000, 2000);
+        pager.scrollX = 1000; // showing the second page
+        scroller(pager, 0, 0, 1000, 1900);
+        Node second = scroller(pager, 1000, 0, 2000, 1900);
+        assertSame(second, best(root));
+    }
+
+    @Test
+    void hiddenSubtreesAndTheInsideOfScrollersAreNotCopied() {
+        Node root = root();
+        Node hidden = child(root, 0, 0, 1000, 1000);
+        hidden.visible = false;
+        scroller(hidden, 0, 0, 1000, 1000);
+        Node list = scroller(root, 0, 1000, 1000, 2000);
+        child(list, 0, 0, 1000, 100);
+        child(list, 0, 100, 1000, 200);
+        assertSame(list, best(root));
+        assertEquals(2, snapshot.size()); // root and list
+        assertEquals(1, snapshot.getCandidateCount());
+    }
+
+    @Test
+    void tiesGoToTheUpperRoot() {
+        Node lower = root();
+        scroller(lower, 0, 0, 1000, 2000);
+        Node upper = root();
+        Node dialogList = scroller(upper, 0, 0, 1000, 2000);
+        assertSame(dialogList, best(lower, upper));
+        assertEquals(0, snapshot.getRootBest(0));
+        assertEquals(1, snapshot.getRootBest(1));
+    }
+
+    @Test
+    void theNodeBudgetTruncatesTheCapture() {
+        Node tree = SyntheticTree.generate(1, 2000, 16, 40);
+        snapshot.setNodeBudget(100);
+        snapshot.reset();
+        snapshot.capture(tree, 0, 0, true);
+        assertEquals(100, snapshot.size());
+        assertTrue(snapshot.isRootTruncated(0));
+    }
+
+    @Test
+    void generatedTreesHaveTheRequestedShape() {
+        Node tree = SyntheticTree.generate(3, 5000, 64, 40);
+        assertEquals(5000, SyntheticTree.countNodes(tree));
+        snapshot.setNodeBudget(Integer.MAX_VALUE);
+        snapshot.setTimeBudgetNanos(Long.MAX_VALUE);
+        snapshot.reset();
+        snapshot.capture(tree, 0, 0, true);
+        snapshot.score();
+        assertFalse(snapshot.isRootTruncated(0));
+        assertTrue(snapshot.getBest() >= 0);
+    }
+
+    @Test
+    void aTracedSnapshotScoresTheSameAfterReadingItBack() throws IOException {
+        Node tree = SyntheticTree.generate(5, 3000, 24, 20);
+        Node dialog = root();
+        scroller(dialog, 100, 400, 900, 1600).elevated = true;
+        snapshot.reset();
+        snapshot.capture(tree, 0, 0, false);
+        snapshot.capture(dialog, 0, 0, true);
+        snapshot.score();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        snapshot.writeTo(new DataOutputStream(bytes));
+        TreeSnapshot<Node> read = TreeSnapshot.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        read.score();
+
+        assertEquals(snapshot.size(), read.size());
+        assertEquals(snapshot.getCandidateCount(), read.getCandidateCount());
+        assertEquals(snapshot.getBest(), read.getBest());
+        assertEquals(snapshot.getBestScore(), read.getBestScore());
+        for (int r = 0; r < snapshot.getRootCount(); r++) {
+            assertEquals(snapshot.getRootBest(r), read.getRootBest(r));
+        }
+        assertNull(read.candidateAt(read.getBest()));
+    }
+
+    @Test
+    void readingFromAWrongOffsetFailsInsteadOfAllocating() throws IOException {
+        Node root = root();
+        scroller(root, 0, 0, 1000, 2000);
+        snapshot.reset();
+        snapshot.capture(root, 0, 0, true);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        snapshot.writeTo(new DataOutputStream(bytes));
+        byte[] rows = bytes.toByteArray();
+
+        // skipping a byte turns the counts into garbage
+        assertThrows(IOException.class, () -> TreeSnapshot.readFrom(
+                new DataInputStream(new ByteArrayInputStream(rows, 1, rows.length - 1))));
+
+        ByteArrayOutputStream huge = new ByteArrayOutputStream();
+        new DataOutputStream(huge).writeInt(Integer.MAX_VALUE);
+        assertThrows(IOException.class, () -> TreeSnapshot.readFrom(
+                new DataInputStream(new ByteArrayInputStream(huge.toByteArray()))));
+    }
+}
@@ -0,0 +1,103 @@
+package com.yourdomain.statusbarscroll;
+
+import android.app.Activity;
+import android.view.View;
+import android.webkit.WebView;
+import android.widget.AbsListView;
+import android.widget.ScrollView;
+
+import com.yourdomain.statusbarscroll.core.HookPolicy;
+
+import de.robv.android.xposed.XC_MethodHook;
+import de.robv.android.xposed.XposedBridge;
+import de.robv.android.xposed.XSharedPreferences;
+import de.robv.android.xposed.XposedHelpers;
+import de.robv.android.xposed.callbacks.XC_LoadPackage;
+
+// App-side hooks, installed per process from handleLoadPackage instead of in every process
+// from initZygote. Whether a process is hooked is decided once, for the first package it
+// loads, from the module prefs: in the default denylist mode every app but the
+// excluded_packages is hooked, in allowlist mode only the hooked_packages are. A process that
+// isn't hooked never gets a hook on AbsListView/ScrollView/WebView construction, so it pays no
+// dispatch cost for them at all. The RecyclerView and NestedScrollView an app bundles, androidx
+// or support, are hooked through the app's own ClassLoader when it has them.
+// Read with XSharedPreferences: this early in an app process there is no Context to read
+// the prefs through, and the file is only read once. The decision itself is HookPolicy, so
+// bench/ can measure it next to the per-construction dispatch an unhooked process saves.
+final class AppHooks {
+
+    // SystemUI and the framework are handled elsewhere or have no user scrollables
+    private static final String[] NEVER_HOOKED = new String[]{
+            "android", "com.android.systemui", ModuleConfig.MODULE_PACKAGE
+    };
+
+    // Registers every scroller an Activity creates with the process' scroll endpoint
+    private static final XC_MethodHook REGISTER = new XC_MethodHook() {
+        @Override
+        protected void afterHookedMethod(MethodHookParam param) throws Throwable {
+            View view = (View) param.thisObject;
+            if (!(view.getContext() instanceof Activity))
+                return;
+            // subclasses that only page, like ViewPager2's internal RecyclerView
+            if (ScrollKinds.kindOf(view) == ScrollKinds.KIND_NONE)
+                return;
+            ScrollableRegistry.register(view);
+        }
+    };
+
+    private static boolean sDecided;
+
+    private AppHooks() { }
+
+    static void installIfAllowed(XC_LoadPackage.LoadPackageParam lpparam) {
+        if (sDecided) return; // later packages loaded into the same process follow the first
+        sDecided = true;
+
+        long start = System.nanoTime();
+        String pkg = lpparam.packageName;
+        if (!isAllowed(pkg)) {
+            ModLog.d("apphooks", "{} not hooked, decided in {}us", pkg, (System.nanoTime() - start) / 1000);
+            return;
+        }
+        try {
+            // AbsListView, it's one instance of a scroller
+            XposedHelpers.findAndHookMethod(AbsListView.class, "initAbsListView", REGISTER);
+            // Another one
+            XposedHelpers.findAndHookMethod(ScrollView.class, "initScrollView", REGISTER);
+            // WebView has no init method shared by its constructors; the registry drops the repeats
+            XposedBridge.hookAllConstructors(WebView.class, REGISTER);
+            // Library scrollers, bundled by the app; their constructors chain like WebView's
+            int library = 0;
+            for (Class<?> scroller : ScrollKinds.libraryScrollers(lpparam.classLoader)) {
+                try {
+                    XposedBridge.hookAllConstructors(scroller, REGISTER);
+                    library++;
+                } catch (Throwable t) {
+                    ModLog.w("apphooks", "couldn't hook {}: {}", scroller.getName(), t);
+                }
+            }
+            /* FYI, there are some manufacturer specific ones, like Samsung's TouchWiz ones.
+             * I'll look into those later on...
+             */
+            ModLog.i("apphooks", "hooked {} ({} library scrollers) in {}us", pkg, library,
+                    (System.nanoTime() - start) / 1000);
+        } catch (Throwable t) {
+            ModLog.w("apphooks", "couldn't hook scrollers in {}: {}", pkg, t);
+        }
+    }
+
+    private static boolean isAllowed(String pkg) {
+        if (pkg == null) return false;
+        try {
+            XSharedPreferences prefs = new XSharedPreferences(ModuleConfig.MODULE_PACKAGE, ModuleConfig.PREFS_NAME);
+            return HookPolicy.isHooked(pkg, NEVER_HOOKED,
+                    prefs.getString(ModuleConfig.PREF_APP_HOOK_MODE_KEY, HookPolicy.MODE_DENYLIST),
+                    prefs.getStringSet(ModuleConfig.PREF_HOOKED_PACKAGES_KEY, null),
+                    prefs.getStringSet(ModuleConfig.PREF_EXCLUDED_PACKAGES_KEY, null));
+        } catch (Throwable t) {
+            // unreadable prefs: behave as before and hook, an empty denylist
+            ModLog.w("apphooks", "couldn't read app hook policy: {}", t);
+            return HookPolicy.isHooked(pkg, NEVER_HOOKED, null, null, null);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.yourdomain.statusbarscroll;
+
+import android.content.pm.ApplicationInfo;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+// Remembers which class/lifecycle/field triple worked on the last boot of this ROM build,
+// so later boots can hook it directly instead of probing every candidate.
+// Stored as a small properties file in SystemUI's own cache dir; a different
+// Build.FINGERPRINT (OTA, ROM flash) invalidates the triple but keeps the counters.
+// Changes are recorded from SystemUI's main thread during startup; the file is written on a
+// short-lived background thread, and changes made while a write is pending join that write.
+final class HookResolutionCache {
+
+    private static final String FILE_NAME = "statusbar_scroll_hook_cache.properties";
+
+    private static final String KEY_FINGERPRINT = "fingerprint";
+    private static final String KEY_CLASS = "class";
+    private static final String KEY_LIFECYCLE = "lifecycle";
+    private static final String KEY_FIELD = "field";
+    private static final String KEY_HITS = "hits";
+    private static final String KEY_MISSES = "misses";
+
+    private final File file;
+    private final String fingerprint;
+
+    private String className;
+    private String lifecycle;
+    private String field;
+    private int hits;
+    private int misses;
+    private boolean writePending; // guarded by this
+
+    private HookResolutionCache(File file, String fingerprint) {
+        this.file = file;
+        this.fingerprint = fingerprint;
+    }
+
+    // Never returns null; without a data dir the cache just never hits and never persists
+    static HookResolutionCache load(ApplicationInfo appInfo, String fingerprint) {
+        File file = null;
+        if (appInfo != null && appInfo.dataDir != null) {
+            file = new File(new File(appInfo.dataDir, "cache"), FILE_NAME);
+        }
+        HookResolutionCache cache = new HookResolutionCache(file, fingerprint);
+        if (file == null || !file.exists()) return cache;
+
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            Properties props = new Properties();
+            props.load(in);
+            cache.hits = parseInt(props.getProperty(KEY_HITS));
+            cache.misses = parseInt(props.getProperty(KEY_MISSES));
+            // only trust the triple if it was recorded on this exact build
+            if (fingerprint != null && fingerprint.equals(props.getProperty(KEY_FINGERPRINT))) {
+                cache.className = props.getProperty(KEY_CLASS);
+                cache.lifecycle = props.getProperty(KEY_LIFECYCLE);
+                cache.field = props.getProperty(KEY_FIELD);
+            }
+        } catch (Throwable t) {
+            ModLog.w("cache", "couldn't read hook cache: {}", t);
+        } finally {
+            closeQuietly(in);
+        }
+        return cache;
+    }
+
+    boolean hasResolution() {
+        return className != null && lifecycle != null;
+    }
+
+    String getClassName() {
+        return className;
+    }
+
+    String getLifecycle() {
+        return lifecycle;
+    }
+
+    // Field of the status bar instance that held the view, or null if the instance was the view itself
+    synchronized String getField() {
+        return field;
+    }
+
+    int getHits() {
+        return hits;
+    }
+
+    int getMisses() {
+        return misses;
+    }
+
+    synchronized void recordHit() {
+        hits++;
+        save();
+    }
+
+    // Called after a full probe; a null className means the probe found nothing
+    synchronized void recordMiss(String className, String lifecycle) {
+        misses++;
+        boolean changed = !equal(this.className, className) || !equal(this.lifecycle, lifecycle);
+        this.className = className;
+        this.lifecycle = lifecycle;
+        if (changed) field = null;
+        save();
+    }
+
+    synchronized void recordField(String field) {
+        if (equal(this.field, field)) return;
+        this.field = field;
+        save();
+    }
+
+    // Caller holds the lock
+    private void save() {
+        if (file == null || writePending) return;
+        writePending = true;
+        try {
+            Thread writer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    write();
+                }
+            }, "StatusBarScroll-hookcache");
+            writer.setDaemon(true);
+            writer.start();
+        } catch (Throwable t) {
+            writePending = false;
+            ModLog.w("cache", "couldn't start hook cache write: {}", t);
+        }
+    }
+
+    private void write() {
+        // one write at a time, each taking the newest values once it gets its turn
+        synchronized (file) {
+            Properties props = new Properties();
+            synchronized (this) {
+                writePending = false;
+                if (fingerprint != null) props.setProperty(KEY_FINGERPRINT, fingerprint);
+                if (className != null) props.setProperty(KEY_CLASS, className);
+                if (lifecycle != null) props.setProperty(KEY_LIFECYCLE, lifecycle);
+                if (field != null) props.setProperty(KEY_FIELD, field);
+                props.setProperty(KEY_HITS, String.valueOf(hits));
+                props.setProperty(KEY_MISSES, String.valueOf(misses));
+            }
+            OutputStream out = null;
+            try {
+                File dir = file.getParentFile();
+                if (dir != null && !dir.exists()) dir.mkdirs();
+                out = new FileOutputStream(file);
+                props.store(out, null);
+            } catch (Throwable t) {
+                ModLog.w("cache", "couldn't write hook cache: {}", t);
+            } finally {
+                closeQuietly(out);
+            }
+        }
+    }
+
+    private static int parseInt(String s) {
+        if (s == null) return 0;
+        try {
+            return Integer.parseInt(s.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static void closeQuietly(java.io.Closeable c) {
+        if (c == null) return;
+        try {
+            c.close();
+        } catch (Throwable ignored) { }
+    }
+}
@@ -0,0 +1,56 @@
+package com.yourdomain.statusbarscroll;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+
+// Runs the first tap's one-time work ahead of time, while the main thread has nothing else
+// to do: one step per idle slot, so a frame never waits for more than a single step. Each
+// step is timed into the log and the total goes to ScrollMetrics, which sets the first tap's
+// latency against it. A failed step is logged and skipped; the tap just does it later.
+final class IdleWarmUp implements MessageQueue.IdleHandler {
+
+    // Idle handlers run once per idle period; an empty message ends it so the next step gets one
+    private static final Runnable NEXT_IDLE = () -> { };
+
+    private final Handler handler;
+    private final ScrollMetrics metrics;
+    private final String[] names;
+    private final Runnable[] steps;
+
+    private int next;
+    private long totalNanos;
+
+    private IdleWarmUp(Handler handler, ScrollMetrics metrics, String[] names, Runnable[] steps) {
+        this.handler = handler;
+        this.metrics = metrics;
+        this.names = names;
+        this.steps = steps;
+    }
+
+    // Main thread; names[i] labels steps[i] in the log
+    static void schedule(Handler handler, ScrollMetrics metrics, String[] names, Runnable[] steps) {
+        Looper.myQueue().addIdleHandler(new IdleWarmUp(handler, metrics, names, steps));
+    }
+
+    @Override
+    public boolean queueIdle() {
+        int step = next++;
+        long start = System.nanoTime();
+        try {
+            steps[step].run();
+        } catch (Throwable t) {
+            ModLog.w("warmup", "warm-up step {} failed: {}", names[step], t);
+        }
+        long nanos = System.nanoTime() - start;
+        totalNanos += nanos;
+        ModLog.d("warmup", "warm-up step {} took {}us", names[step], nanos / 1000);
+        if (next < steps.length) {
+            handler.post(NEXT_IDLE);
+            return true;
+        }
+        metrics.recordWarmUp(totalNanos);
+        ModLog.i("warmup", "warm-up done in {}us over {} steps", totalNanos / 1000, steps.length);
+        return false;
+    }
+}
@@ -0,0 +1,173 @@
+package com.yourdomain.statusbarscroll;
+
+import de.robv.android.xposed.XposedBridge;
+
+import java.io.PrintWriter;
+import java.util.HashMap;
+
+// Leveled logger for the module. Messages below the active level cost one branch: the
+// format string and arguments are only turned into text once a message is accepted.
+// Accepted lines go to an in-memory ring buffer (dumped with the SystemUI dumpsys output);
+// only WARN and above are also written to the Xposed log. Each tag is rate limited
+// to RATE_LIMIT lines per RATE_WINDOW_MS, and suppressed lines are counted.
+// Arguments that would box a primitive on a hot path should be guarded with isLoggable().
+final class ModLog {
+
+    static final int DEBUG = 0;
+    static final int INFO = 1;
+    static final int WARN = 2;
+    static final int ERROR = 3;
+    static final int OFF = 4;
+
+    private static final String PREFIX = "[StatusBarScroll] ";
+    private static final char[] LEVEL_CHARS = new char[]{'D', 'I', 'W', 'E'};
+
+    private static final int RING_SIZE = 256;
+    private static final int RATE_LIMIT = 20;
+    private static final long RATE_WINDOW_MS = 1000;
+
+    // Plain statics: a stale read only lets one extra line through
+    private static int sLevel = INFO;
+    private static int sXposedLevel = WARN;
+
+    private static final String[] sRing = new String[RING_SIZE];
+    private static int sRingNext;
+    private static long sRingTotal;
+
+    // tag -> {window start, lines in window, suppressed in window}
+    private static final HashMap<String, long[]> sRates = new HashMap<>();
+    private static final StringBuilder sBuilder = new StringBuilder(128);
+
+    private ModLog() { }
+
+    static void setLevel(int level) {
+        sLevel = level;
+    }
+
+    static void setXposedLevel(int level) {
+        sXposedLevel = level;
+    }
+
+    static boolean isLoggable(int level) {
+        return level >= sLevel;
+    }
+
+    static void d(String tag, String msg) {
+        if (DEBUG >= sLevel) log(DEBUG, tag, msg, null, null, null, 0);
+    }
+
+    static void d(String tag, String fmt, Object a) {
+        if (DEBUG >= sLevel) log(DEBUG, tag, fmt, a, null, null, 1);
+    }
+
+    static void d(String tag, String fmt, Object a, Object b) {
+        if (DEBUG >= sLevel) log(DEBUG, tag, fmt, a, b, null, 2);
+    }
+
+    static void d(String tag, String fmt, Object a, Object b, Object c) {
+        if (DEBUG >= sLevel) log(DEBUG, tag, fmt, a, b, c, 3);
+    }
+
+    static void i(String tag, String msg) {
+        if (INFO >= sLevel) log(INFO, tag, msg, null, null, null, 0);
+    }
+
+    static void i(String tag, String fmt, Object a) {
+        if (INFO >= sLevel) log(INFO, tag, fmt, a, null, null, 1);
+    }
+
+    static void i(String tag, String fmt, Object a, Object b) {
+        if (INFO >= sLevel) log(INFO, tag, fmt, a, b, null, 2);
+    }
+
+    static void i(String tag, String fmt, Object a, Object b, Object c) {
+        if (INFO >= sLevel) log(INFO, tag, fmt, a, b, c, 3);
+    }
+
+    static void w(String tag, String msg) {
+        if (WARN >= sLevel) log(WARN, tag, msg, null, null, null, 0);
+    }
+
+    static void w(String tag, String fmt, Object a) {
+        if (WARN >= sLevel) log(WARN, tag, fmt, a, null, null, 1);
+    }
+
+    static void w(String tag, String fmt, Object a, Object b) {
+        if (WARN >= sLevel) log(WARN, tag, fmt, a, b, null, 2);
+    }
+
+    static void e(String tag, String fmt, Object a) {
+        if (ERROR >= sLevel) log(ERROR, tag, fmt, a, null, null, 1);
+    }
+
+    static void e(String tag, String fmt, Object a, Object b) {
+        if (ERROR >= sLevel) log(ERROR, tag, fmt, a, b, null, 2);
+    }
+
+    // Newest last; also reports how many lines the ring has dropped
+    static void dump(PrintWriter pw) {
+        synchronized (sRing) {
+            long dropped = Math.max(0, sRingTotal - RING_SIZE);
+            pw.println("StatusBarScroll log (" + sRingTotal + " lines, " + dropped + " rotated out):");
+            for (int i = 0; i < RING_SIZE; i++) {
+                String line = sRing[(sRingNext + i) % RING_SIZE];
+                if (line != null) {
+                    pw.print("  ");
+                    pw.println(line);
+                }
+            }
+        }
+    }
+
+    private static void log(int level, String tag, String fmt, Object a, Object b, Object c, int argc) {
+        String line;
+        synchronized (sRing) {
+            long now = System.currentTimeMillis();
+            long[] rate = sRates.get(tag);
+            if (rate == null) {
+                rate = new long[3];
+                sRates.put(tag, rate);
+            }
+            long suppressed = 0;
+            if (now - rate[0] >= RATE_WINDOW_MS) {
+                suppressed = rate[2];
+                rate[0] = now;
+                rate[1] = 0;
+                rate[2] = 0;
+            }
+            if (rate[1] >= RATE_LIMIT) {
+                rate[2]++;
+                return;
+            }
+            rate[1]++;
+
+            StringBuilder sb = sBuilder;
+            sb.setLength(0);
+            sb.append(LEVEL_CHARS[level]).append('/').append(tag).append(": ");
+            format(sb, fmt, a, b, c, argc);
+            if (suppressed > 0) sb.append(" (").append(suppressed).append(" earlier lines suppressed)");
+            line = sb.toString();
+
+            sRing[sRingNext] = line;
+            sRingNext = (sRingNext + 1) % RING_SIZE;
+            sRingTotal++;
+        }
+        if (level >= sXposedLevel) XposedBridge.log(PREFIX + line);
+    }
+
+    // Replaces each "{}" with the next argument; classes print as their name
+    private static void format(StringBuilder sb, String fmt, Object a, Object b, Object c, int argc) {
+        int arg = 0;
+        int start = 0;
+        while (arg < argc) {
+            int at = fmt.indexOf("{}", start);
+            if (at < 0) break;
+            sb.append(fmt, start, at);
+            Object o = arg == 0 ? a : arg == 1 ? b : c;
+            sb.append(o instanceof Class ? ((Class<?>) o).getName() : String.valueOf(o));
+            start = at + 2;
+            arg++;
+        }
+        sb.append(fmt, start, fmt.length());
+    }
+}
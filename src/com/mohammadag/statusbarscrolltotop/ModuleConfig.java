@@ -0,0 +1,252 @@
+package com.yourdomain.statusbarscroll;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.FileObserver;
+import android.os.SystemClock;
+
+import com.yourdomain.statusbarscroll.core.TapDetector;
+import com.yourdomain.statusbarscroll.core.TreeScoring;
+
+import de.robv.android.xposed.XposedHelpers;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+// Immutable snapshot of the module prefs. Loaded once, then reloaded only when the prefs
+// file changes: a FileObserver on the module's shared_prefs dir republishes the snapshot,
+// so callers on the hot path read a single volatile field. If the dir can't be watched
+// (SELinux), the file's mtime is checked at most every MTIME_CHECK_INTERVAL_MS instead.
+// Every snapshot that gets published also sets ModLog's levels, so a changed log_level
+// takes effect without restarting SystemUI.
+final class ModuleConfig {
+
+    // Change to your module package if required
+    static final String MODULE_PACKAGE = "com.yourdomain.statusbarscroll";
+    static final String PREFS_NAME = "statusbar_scroll_prefs";
+
+    static final String PREF_ENABLE_KEY = "enable_scroll_to_top";
+    static final String PREF_GESTURE_KEY = "gesture_type";
+    static final String PREF_EXCLUDED_PACKAGES_KEY = "excluded_packages";
+    static final String PREF_ANIMATION_KEY = "animation_mode";
+    static final String PREF_FAST_SCROLL_SCREENS_KEY = "fast_scroll_screens";
+    static final String PREF_TAP_SLOP_KEY = "tap_slop_dp";
+    static final String PREF_TRACE_KEY = "trace_enabled";
+    static final String PREF_WARM_UP_KEY = "warm_up";
+    static final String PREF_RESTORE_KEY = "restore_on_tap_again";
+    static final String PREF_NODE_BUDGET_KEY = "search_node_budget";        // 0 uses the default
+    static final String PREF_TIME_BUDGET_KEY = "search_time_budget_ms";     // per window; 0 uses the default
+    static final String PREF_LOG_LEVEL_KEY = "log_level";               // debug, info, warn, error, off
+    static final String PREF_XPOSED_LOG_LEVEL_KEY = "xposed_log_level"; // same values
+    // Read once per app process by AppHooks, not part of the snapshot
+    static final String PREF_APP_HOOK_MODE_KEY = "app_hook_mode";
+    static final String PREF_HOOKED_PACKAGES_KEY = "hooked_packages";
+
+    static final int GESTURE_DOUBLE_TAP = TapDetector.MODE_DOUBLE_TAP;
+    static final int GESTURE_SINGLE_TAP = TapDetector.MODE_SINGLE_TAP; // fires on UP, no double-tap wait
+    static final int GESTURE_LONG_PRESS = TapDetector.MODE_LONG_PRESS;
+
+    static final int ANIMATION_SMOOTH = 0;
+    static final int ANIMATION_INSTANT = 1;
+
+    // Lists further down than this many screens jump first, then animate; 0 disables
+    static final int DEFAULT_FAST_SCROLL_SCREENS = 3;
+
+    // Tap slop in dp; 0 uses the system touch slop
+    static final int DEFAULT_TAP_SLOP_DP = 0;
+
+    private static final long MTIME_CHECK_INTERVAL_MS = 5000;
+
+    // Used until the prefs could be read once; everything on, as before
+    private static final ModuleConfig DEFAULTS = defaults();
+
+    private static volatile ModuleConfig sCurrent = DEFAULTS;
+
+    // Only touched by whoever loads; benign races just cause an extra reload
+    private static File sPrefsFile;
+    private static FileObserver sObserver;
+    private static long sNextMtimeCheck;
+
+    final boolean enabled;
+    final int gestureType;
+    final Set<String> excludedPackages;
+    final int animationMode;
+    final int fastScrollScreens;
+    final int tapSlopDp;
+    final boolean traceEnabled; // record touches and selections for TraceReplay
+    final boolean warmUp;       // prepare the first tap while SystemUI is idle; off to measure a cold one
+    final boolean restoreOnTapAgain; // a tap soon after a scroll to the top goes back down
+    final int nodeBudget;       // views copied per tap, over all windows
+    final long timeBudgetNanos; // copy time per window
+    final int logLevel;         // ModLog level of the in-memory log (dumpsys)
+    final int xposedLogLevel;   // ModLog level of what is also written to the Xposed log
+    private final long mtime;
+
+    private ModuleConfig(boolean enabled, int gestureType, Set<String> excludedPackages, int animationMode,
+                         int fastScrollScreens, int tapSlopDp, boolean traceEnabled, boolean warmUp, boolean restoreOnTapAgain,
+                         int nodeBudget, long timeBudgetNanos, int logLevel, int xposedLogLevel, long mtime) {
+        this.enabled = enabled;
+        this.gestureType = gestureType;
+        this.excludedPackages = excludedPackages;
+        this.animationMode = animationMode;
+        this.fastScrollScreens = fastScrollScreens;
+        this.tapSlopDp = tapSlopDp;
+        this.traceEnabled = traceEnabled;
+        this.warmUp = warmUp;
+        this.restoreOnTapAgain = restoreOnTapAgain;
+        this.nodeBudget = nodeBudget;
+        this.timeBudgetNanos = timeBudgetNanos;
+        this.logLevel = logLevel;
+        this.xposedLogLevel = xposedLogLevel;
+        this.mtime = mtime;
+    }
+
+    // A new instance each time: DEFAULTS itself means "not loaded yet"
+    private static ModuleConfig defaults() {
+        return new ModuleConfig(true, GESTURE_DOUBLE_TAP, Collections.<String>emptySet(), ANIMATION_SMOOTH,
+                DEFAULT_FAST_SCROLL_SCREENS, DEFAULT_TAP_SLOP_DP, false, true, true,
+                TreeScoring.DEFAULT_NODE_BUDGET, TreeScoring.DEFAULT_TIME_BUDGET_NANOS, ModLog.INFO, ModLog.WARN, 0);
+    }
+
+    boolean isExcluded(String packageName) {
+        return packageName != null && excludedPackages.contains(packageName);
+    }
+
+    static ModuleConfig get() {
+        ModuleConfig c = sCurrent;
+        if (c == DEFAULTS) return loadAndWatch();
+        if (sObserver == null && SystemClock.uptimeMillis() >= sNextMtimeCheck) return checkMtime(c);
+        return c;
+    }
+
+    private static synchronized ModuleConfig loadAndWatch() {
+        if (sCurrent != DEFAULTS) return sCurrent;
+        Context appCtx = currentApplication();
+        if (appCtx == null) return DEFAULTS; // too early in process start; try again next time
+
+        Context moduleCtx = moduleContext(appCtx);
+        if (moduleCtx == null) {
+            // module package unreachable: settle on defaults instead of retrying every call
+            return publish(defaults());
+        }
+
+        File dir = new File(moduleCtx.getApplicationInfo().dataDir, "shared_prefs");
+        sPrefsFile = new File(dir, PREFS_NAME + ".xml");
+        ModuleConfig loaded = publish(read(moduleCtx));
+        try {
+            final String fileName = sPrefsFile.getName();
+            // SharedPreferences writes a temp file and renames it over the old one
+            FileObserver observer = new FileObserver(dir.getPath(), FileObserver.CLOSE_WRITE | FileObserver.MOVED_TO) {
+                @Override
+                public void onEvent(int event, String path) {
+                    if (fileName.equals(path)) reload();
+                }
+            };
+            observer.startWatching();
+            sObserver = observer;
+        } catch (Throwable t) {
+            ModLog.i("config", "can't watch module prefs, polling mtime: {}", t);
+            sNextMtimeCheck = SystemClock.uptimeMillis() + MTIME_CHECK_INTERVAL_MS;
+        }
+        return loaded;
+    }
+
+    private static synchronized ModuleConfig checkMtime(ModuleConfig c) {
+        sNextMtimeCheck = SystemClock.uptimeMillis() + MTIME_CHECK_INTERVAL_MS;
+        File f = sPrefsFile;
+        if (f == null || f.lastModified() == c.mtime) return c;
+        return reload();
+    }
+
+    private static synchronized ModuleConfig reload() {
+        Context appCtx = currentApplication();
+        Context moduleCtx = appCtx != null ? moduleContext(appCtx) : null;
+        if (moduleCtx == null) return sCurrent;
+        ModuleConfig loaded = publish(read(moduleCtx));
+        ModLog.i("config", "module prefs reloaded (enabled={})", loaded.enabled);
+        return loaded;
+    }
+
+    private static ModuleConfig publish(ModuleConfig c) {
+        ModLog.setLevel(c.logLevel);
+        ModLog.setXposedLevel(c.xposedLogLevel);
+        sCurrent = c;
+        return c;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static ModuleConfig read(Context moduleCtx) {
+        try {
+            long mtime = sPrefsFile != null ? sPrefsFile.lastModified() : 0;
+            // MODE_MULTI_PROCESS makes the cached SharedPreferences re-read the file
+            SharedPreferences prefs = moduleCtx.getSharedPreferences(PREFS_NAME, Context.MODE_MULTI_PROCESS);
+            Set<String> excluded = prefs.getStringSet(PREF_EXCLUDED_PACKAGES_KEY, null);
+            return new ModuleConfig(
+                    prefs.getBoolean(PREF_ENABLE_KEY, true),
+                    parseGesture(prefs.getString(PREF_GESTURE_KEY, null)),
+                    excluded == null || excluded.isEmpty() ? Collections.<String>emptySet()
+                            : Collections.unmodifiableSet(new HashSet<>(excluded)),
+                    "instant".equals(prefs.getString(PREF_ANIMATION_KEY, "smooth")) ? ANIMATION_INSTANT : ANIMATION_SMOOTH,
+                    Math.max(0, prefs.getInt(PREF_FAST_SCROLL_SCREENS_KEY, DEFAULT_FAST_SCROLL_SCREENS)),
+                    Math.max(0, prefs.getInt(PREF_TAP_SLOP_KEY, DEFAULT_TAP_SLOP_DP)),
+                    prefs.getBoolean(PREF_TRACE_KEY, false),
+                    prefs.getBoolean(PREF_WARM_UP_KEY, true),
+                    prefs.getBoolean(PREF_RESTORE_KEY, true),
+                    budget(prefs.getInt(PREF_NODE_BUDGET_KEY, 0), TreeScoring.DEFAULT_NODE_BUDGET),
+                    budget(prefs.getInt(PREF_TIME_BUDGET_KEY, 0) * 1000000L, TreeScoring.DEFAULT_TIME_BUDGET_NANOS),
+                    parseLogLevel(prefs.getString(PREF_LOG_LEVEL_KEY, null), ModLog.INFO),
+                    parseLogLevel(prefs.getString(PREF_XPOSED_LOG_LEVEL_KEY, null), ModLog.WARN),
+                    mtime);
+        } catch (Throwable t) {
+            ModLog.w("config", "couldn't read module prefs: {}", t);
+            // keep going with defaults, but don't retry on every call
+            return defaults();
+        }
+    }
+
+    private static int parseGesture(String value) {
+        if ("single_tap".equals(value)) return GESTURE_SINGLE_TAP;
+        if ("long_press".equals(value)) return GESTURE_LONG_PRESS;
+        return GESTURE_DOUBLE_TAP;
+    }
+
+    private static int budget(int value, int fallback) {
+        return value > 0 ? value : fallback;
+    }
+
+    private static long budget(long value, long fallback) {
+        return value > 0 ? value : fallback;
+    }
+
+    private static int parseLogLevel(String value, int fallback) {
+        if ("debug".equals(value)) return ModLog.DEBUG;
+        if ("info".equals(value)) return ModLog.INFO;
+        if ("warn".equals(value)) return ModLog.WARN;
+        if ("error".equals(value)) return ModLog.ERROR;
+        if ("off".equals(value)) return ModLog.OFF;
+        return fallback;
+    }
+
+    private static Context currentApplication() {
+        try {
+            return (Context) XposedHelpers.callStaticMethod(
+                    XposedHelpers.findClass("android.app.ActivityThread", null),
+                    "currentApplication");
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    // NOTE: when running inside another app, getModuleContext is not available; the module
+    // prefs are reached through a package context of the module (best-effort).
+    private static Context moduleContext(Context appCtx) {
+        try {
+            return appCtx.createPackageContext(MODULE_PACKAGE, Context.CONTEXT_IGNORE_SECURITY);
+        } catch (Throwable t) {
+            ModLog.w("config", "couldn't create module context: {}", t);
+            return null;
+        }
+    }
+}
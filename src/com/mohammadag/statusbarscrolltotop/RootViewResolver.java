@@ -0,0 +1,277 @@
+package com.yourdomain.statusbarscroll;
+
+import android.os.Build;
+import android.view.Display;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.WindowManager;
+
+import com.yourdomain.statusbarscroll.core.RootSource;
+
+import de.robv.android.xposed.XposedHelpers;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.List;
+
+// Resolves the WindowManagerGlobal root-view accessor once per process and keeps the
+// ready-to-call handles, so a tap only pays for the actual read of the root views.
+// Plain Method/Field handles are used on purpose: MethodHandle.invoke needs min-api 26
+// to dex, and this module still supports API 15.
+final class RootViewResolver implements RootSource<View> {
+
+    private static final int STRATEGY_UNRESOLVED = 0;
+    private static final int STRATEGY_METHOD = 1;  // getRootViews()/getViews() returning View[] or List
+    private static final int STRATEGY_FIELD = 2;   // mViews field (View[] on old releases, ArrayList<View> later)
+    private static final int STRATEGY_INDEXED = 3; // getRootViewCount() + getRootView(int)
+    private static final int STRATEGY_FAILED = -1;
+
+    // Windows a status bar tap never means: the bars themselves, the shade (taps while it is
+    // open are ignored anyway), IME, wallpaper, toasts and non-touchable overlays.
+    // Literal values because most of these are hidden or newer than the target SDK.
+    private static final int[] SKIPPED_WINDOW_TYPES = new int[]{
+            2000, // TYPE_STATUS_BAR
+            2005, // TYPE_TOAST
+            2006, // TYPE_SYSTEM_OVERLAY
+            2011, // TYPE_INPUT_METHOD
+            2012, // TYPE_INPUT_METHOD_DIALOG
+            2013, // TYPE_WALLPAPER
+            2014, // TYPE_STATUS_BAR_PANEL
+            2019, // TYPE_NAVIGATION_BAR
+            2024, // TYPE_NAVIGATION_BAR_PANEL
+            2040, // TYPE_NOTIFICATION_SHADE (R+)
+    };
+
+    // Passed as displayId/tapX when the tap's display or position isn't known
+    static final int UNKNOWN = -1;
+
+    private final ClassLoader cl;
+
+    private int strategy = STRATEGY_UNRESOLVED;
+    private Object wmgInstance;
+    private Method viewsMethod;
+    private Field viewsField;
+    private Method countMethod;
+    private Method getMethod;
+
+    // Reused between taps; grows only when a window is added
+    private View[] buffer = new View[8];
+    private boolean[] underTap = new boolean[8];
+    private final int[] location = new int[2];
+    private int count;
+    private int skipped;
+
+    // Latency bookkeeping: one-time resolve cost vs. what each tap now pays
+    private long resolveNanos;
+    private long lastCollectNanos;
+
+    RootViewResolver(ClassLoader cl) {
+        this.cl = cl;
+    }
+
+    boolean isResolved() {
+        return strategy > STRATEGY_UNRESOLVED;
+    }
+
+    long getResolveNanos() {
+        return resolveNanos;
+    }
+
+    long getLastCollectNanos() {
+        return lastCollectNanos;
+    }
+
+    // Fills the internal buffer with the current root views and returns how many there are;
+    // read them back with rootAt(). Must be called on the main thread.
+    @Override
+    public int collect() {
+        if (strategy == STRATEGY_UNRESOLVED) resolve();
+        if (strategy == STRATEGY_FAILED) return 0;
+
+        long start = System.nanoTime();
+        count = 0;
+        try {
+            if (strategy == STRATEGY_INDEXED) {
+                Object c = countMethod.invoke(wmgInstance);
+                int n = c instanceof Integer ? (Integer) c : 0;
+                for (int i = 0; i < n; i++) {
+                    try {
+                        add(getMethod.invoke(wmgInstance, i));
+                    } catch (Throwable ignored) { }
+                }
+            } else {
+                Object views = strategy == STRATEGY_METHOD ? viewsMethod.invoke(wmgInstance) : viewsField.get(wmgInstance);
+                if (views instanceof View[]) {
+                    View[] arr = (View[]) views;
+                    for (View v : arr) add(v);
+                } else if (views instanceof List) {
+                    List<?> l = (List<?>) views;
+                    for (int i = 0, n = l.size(); i < n; i++) add(l.get(i));
+                }
+            }
+        } catch (Throwable t) {
+            ModLog.w("roots", "couldn't read root views: {}", t);
+        }
+        lastCollectNanos = System.nanoTime() - start;
+        return count;
+    }
+
+    // Narrows the collected roots to the windows a tap at screen x tapX on displayId can mean,
+    // keeping their order: visible, on that display, of a content window type. If some of them
+    // span tapX (split screen, freeform), only those are kept. Returns the new count; the
+    // dropped roots are never traversed. Main thread.
+    int retainForTap(int displayId, int tapX) {
+        int kept = 0;
+        boolean anyUnderTap = false;
+        for (int i = 0; i < count; i++) {
+            View root = buffer[i];
+            buffer[i] = null;
+            if (!isCandidate(root, displayId)) continue;
+            boolean under = false;
+            if (tapX != UNKNOWN) {
+                root.getLocationOnScreen(location);
+                under = tapX >= location[0] && tapX < location[0] + root.getWidth();
+            }
+            anyUnderTap |= under;
+            buffer[kept] = root;
+            underTap[kept] = under;
+            kept++;
+        }
+        if (anyUnderTap) {
+            int n = kept;
+            kept = 0;
+            for (int i = 0; i < n; i++) {
+                View root = buffer[i];
+                buffer[i] = null;
+                if (underTap[i]) buffer[kept++] = root;
+            }
+        }
+        skipped = count - kept;
+        count = kept;
+        return kept;
+    }
+
+    // Roots dropped by the last retainForTap()
+    int getSkippedCount() {
+        return skipped;
+    }
+
+    private static boolean isCandidate(View root, int displayId) {
+        if (root.getVisibility() != View.VISIBLE) return false;
+        if (displayId != UNKNOWN) {
+            int d = displayIdOf(root);
+            if (d != UNKNOWN && d != displayId) return false;
+        }
+        ViewGroup.LayoutParams lp = root.getLayoutParams();
+        if (lp instanceof WindowManager.LayoutParams) {
+            int type = ((WindowManager.LayoutParams) lp).type;
+            for (int skippedType : SKIPPED_WINDOW_TYPES) {
+                if (type == skippedType) return false;
+            }
+        }
+        return true;
+    }
+
+    // Display a view's window is on: always the default one before API 17, UNKNOWN while detached
+    static int displayIdOf(View v) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR1) return Display.DEFAULT_DISPLAY;
+        Display d = v.getDisplay();
+        return d != null ? d.getDisplayId() : UNKNOWN;
+    }
+
+    @Override
+    public View rootAt(int i) {
+        return buffer[i];
+    }
+
+    // Drops references held from the last collect() so closed windows can be collected
+    @Override
+    public void clear() {
+        for (int i = 0; i < count; i++) buffer[i] = null;
+        count = 0;
+    }
+
+    private void add(Object o) {
+        if (!(o instanceof View)) return;
+        if (count == buffer.length) {
+            View[] grown = new View[buffer.length * 2];
+            System.arraycopy(buffer, 0, grown, 0, count);
+            buffer = grown;
+            underTap = new boolean[grown.length];
+        }
+        buffer[count++] = (View) o;
+    }
+
+    private void resolve() {
+        long start = System.nanoTime();
+        try {
+            Class<?> wmgClass = XposedHelpers.findClassIfExists("android.view.WindowManagerGlobal", cl);
+            if (wmgClass == null) {
+                wmgClass = XposedHelpers.findClassIfExists("android.view.WindowManagerImpl", cl);
+            }
+            if (wmgClass == null) {
+                ModLog.w("roots", "WindowManagerGlobal class not found");
+                strategy = STRATEGY_FAILED;
+                return;
+            }
+
+            // getInstance(), older versions may use getDefault(); the result is a process singleton
+            for (String name : new String[]{"getInstance", "getDefault"}) {
+                try {
+                    Method m = wmgClass.getDeclaredMethod(name);
+                    m.setAccessible(true);
+                    wmgInstance = m.invoke(null);
+                    if (wmgInstance != null) break;
+                } catch (Throwable ignored) { }
+            }
+            if (wmgInstance == null) {
+                ModLog.w("roots", "couldn't get WindowManagerGlobal instance");
+                strategy = STRATEGY_FAILED;
+                return;
+            }
+
+            for (String name : new String[]{"getRootViews", "getViews"}) {
+                try {
+                    Method m = wmgClass.getDeclaredMethod(name);
+                    m.setAccessible(true);
+                    if (m.invoke(wmgInstance) != null) {
+                        viewsMethod = m;
+                        strategy = STRATEGY_METHOD;
+                        return;
+                    }
+                } catch (Throwable ignored) { }
+            }
+
+            try {
+                Field f = wmgClass.getDeclaredField("mViews");
+                f.setAccessible(true);
+                if (f.get(wmgInstance) != null) {
+                    viewsField = f;
+                    strategy = STRATEGY_FIELD;
+                    return;
+                }
+            } catch (Throwable ignored) { }
+
+            // on some ROMs WindowManagerGlobal only exposes indexed access
+            try {
+                Method c = wmgClass.getMethod("getRootViewCount");
+                c.setAccessible(true);
+                Method g = wmgClass.getMethod("getRootView", int.class);
+                g.setAccessible(true);
+                countMethod = c;
+                getMethod = g;
+                strategy = STRATEGY_INDEXED;
+                return;
+            } catch (Throwable ignored) { }
+
+            ModLog.w("roots", "couldn't obtain root views accessor");
+            strategy = STRATEGY_FAILED;
+        } catch (Throwable t) {
+            ModLog.e("roots", "root view resolver error: {}", t);
+            strategy = STRATEGY_FAILED;
+        } finally {
+            resolveNanos = System.nanoTime() - start;
+            ModLog.i("roots", "root view accessor strategy={} resolved in {}us", strategy, resolveNanos / 1000);
+        }
+    }
+}
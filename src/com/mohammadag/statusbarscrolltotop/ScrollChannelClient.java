@@ -0,0 +1,145 @@
+package com.yourdomain.statusbarscroll;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Messenger;
+import android.os.Process;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+// App side of the scroll command channel: a Messenger on the main looper that SystemUI
+// calls directly when this process is in the foreground. It is registered by sending it to
+// SystemUI's host Messenger, which SystemUI broadcasts on start and again when asked; only a
+// sender holding the status bar permission is listened to, so no other app can pose as
+// the host. Registered once per process, and again whenever a restarted SystemUI asks.
+// The process also tells SystemUI when it gains or loses its last started activity, which is
+// what SystemUI picks the taps' recipients by.
+final class ScrollChannelClient {
+
+    private static final String SYSTEMUI_PACKAGE = "com.android.systemui";
+
+    // Registering the receiver is retried with later scrollers, up to this many times
+    private static final int MAX_START_ATTEMPTS = 3;
+
+    private static Messenger sMessenger;
+    private static Messenger sHost;
+    // main thread only; activities started before start() are unknown, so a stop of one of
+    // those still counts when nothing known is left
+    private static final Set<Activity> sStarted = Collections.newSetFromMap(new WeakHashMap<Activity, Boolean>());
+    private static int sFailedStarts;
+
+    private ScrollChannelClient() { }
+
+    static synchronized void start(Context context) {
+        if (sMessenger != null || sFailedStarts >= MAX_START_ATTEMPTS) return;
+        final Context appContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+
+        Handler handler = new Handler(Looper.getMainLooper(), new Handler.Callback() {
+            @Override
+            public boolean handleMessage(Message msg) {
+                if (msg.what != ScrollChannelHost.MSG_SCROLL_TO_TOP) return false;
+                ScrollableRegistry.dispatchScrollToTop(msg.arg1, msg.arg2);
+                return true;
+            }
+        });
+        Messenger messenger = new Messenger(handler);
+
+        try {
+            ScrollChannelHost.registerExportedReceiver(appContext, new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context c, Intent intent) {
+                    Messenger host = intent.getParcelableExtra(ScrollChannelHost.EXTRA_MESSENGER);
+                    if (host != null) register(appContext, host);
+                }
+            }, new IntentFilter(ScrollChannelHost.ACTION_HOST_READY), ScrollChannelHost.HOST_PERMISSION);
+        } catch (Throwable t) {
+            // left unset, so the next registered scroller tries again
+            sFailedStarts++;
+            ModLog.w("channel", "couldn't listen for the channel host: {}", t);
+            return;
+        }
+        sMessenger = messenger;
+        trackForeground(appContext);
+        requestHost(appContext);
+    }
+
+    private static void trackForeground(Context appContext) {
+        if (!(appContext instanceof Application)) return;
+        try {
+            ((Application) appContext).registerActivityLifecycleCallbacks(new Application.ActivityLifecycleCallbacks() {
+                @Override
+                public void onActivityStarted(Activity activity) {
+                    boolean wasEmpty = sStarted.isEmpty();
+                    sStarted.add(activity);
+                    if (wasEmpty) reportForeground(true);
+                }
+
+                @Override
+                public void onActivityStopped(Activity activity) {
+                    sStarted.remove(activity);
+                    if (sStarted.isEmpty()) reportForeground(false);
+                }
+
+                @Override public void onActivityCreated(Activity activity, Bundle state) { }
+                @Override public void onActivityResumed(Activity activity) { }
+                @Override public void onActivityPaused(Activity activity) { }
+                @Override public void onActivitySaveInstanceState(Activity activity, Bundle state) { }
+                @Override public void onActivityDestroyed(Activity activity) { }
+            });
+        } catch (Throwable t) {
+            // SystemUI still has the state from registration, just not its changes
+            ModLog.w("channel", "couldn't track foreground changes: {}", t);
+        }
+    }
+
+    // Until registered there is no one to tell; SystemUI looks the state up when it registers us
+    private static synchronized void reportForeground(boolean inForeground) {
+        if (sHost == null) return;
+        try {
+            Message msg = Message.obtain(null, ScrollChannelHost.MSG_FOREGROUND);
+            msg.arg1 = Process.myPid();
+            msg.arg2 = inForeground ? 1 : 0;
+            msg.replyTo = sMessenger;
+            sHost.send(msg);
+        } catch (Throwable t) {
+            ModLog.w("channel", "couldn't report foreground change: {}", t);
+        }
+    }
+
+    // SystemUI answers with ACTION_HOST_READY to this package only
+    private static void requestHost(Context appContext) {
+        try {
+            Intent intent = new Intent(ScrollChannelHost.ACTION_REQUEST_HOST);
+            intent.setPackage(SYSTEMUI_PACKAGE);
+            intent.putExtra(ScrollChannelHost.EXTRA_PACKAGE, appContext.getPackageName());
+            appContext.sendBroadcast(intent);
+        } catch (Throwable t) {
+            ModLog.w("channel", "couldn't ask for the channel host: {}", t);
+        }
+    }
+
+    private static synchronized void register(Context appContext, Messenger host) {
+        try {
+            Message msg = Message.obtain(null, ScrollChannelHost.MSG_REGISTER);
+            msg.arg1 = Process.myPid();
+            msg.replyTo = sMessenger;
+            Bundle data = new Bundle();
+            data.putString(ScrollChannelHost.EXTRA_PACKAGE, appContext.getPackageName());
+            msg.setData(data);
+            host.send(msg);
+            sHost = host;
+        } catch (Throwable t) {
+            ModLog.w("channel", "couldn't register scroll channel: {}", t);
+        }
+    }
+}
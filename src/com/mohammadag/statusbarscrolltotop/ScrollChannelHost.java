@@ -0,0 +1,301 @@
+package com.yourdomain.statusbarscroll;
+
+import android.app.ActivityManager;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.DeadObjectException;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Messenger;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+
+import java.util.List;
+
+// SystemUI side of the scroll command channel. App processes that hold scrollers register a
+// Messenger once (see ScrollChannelClient); a tap then sends one message to the endpoints of
+// the foreground process(es) only, instead of a system-wide broadcast that wakes every app.
+// Registration is a Message to SystemUI's own Messenger, which the host hands out by
+// broadcast: the binder stamps each Message with the uid that sent it, so an endpoint is only
+// accepted for a pid and package that really are the sender's. Anything carried in an
+// exported broadcast could be forged by any app.
+// Which processes are in the foreground is reported by the apps themselves over the same
+// Messenger as their activities start and stop, so a tap doesn't have to ask ActivityManager.
+// Endpoint and ForegroundSource are interfaces so the channel can be driven by a local stand-in.
+final class ScrollChannelHost {
+
+    // SystemUI -> apps: "here is the host Messenger", sent on start and on request
+    static final String ACTION_HOST_READY = "com.mohammadag.statusbarscrolltotop.CHANNEL_HOST_READY";
+    // apps -> SystemUI: "send me the host Messenger"
+    static final String ACTION_REQUEST_HOST = "com.mohammadag.statusbarscrolltotop.REQUEST_CHANNEL_HOST";
+    static final String EXTRA_PACKAGE = "package";
+    static final String EXTRA_MESSENGER = "messenger";
+
+    // Only SystemUI (and the platform) hold it, so apps accept ACTION_HOST_READY from no one else
+    static final String HOST_PERMISSION = "android.permission.STATUS_BAR_SERVICE";
+
+    static final int MSG_SCROLL_TO_TOP = 1; // host -> app: arg1 display, arg2 tap x
+    static final int MSG_REGISTER = 2;      // app -> host: arg1 pid, replyTo its Messenger, data EXTRA_PACKAGE
+    static final int MSG_FOREGROUND = 3;    // app -> host: arg1 pid, arg2 1 if it has a started activity, replyTo as registered
+
+    // Message.sendingUid is filled in from Android 5.1 on
+    private static final int SDK_SENDING_UID = 22;
+
+    // Context.RECEIVER_EXPORTED and the release that requires a flag (Android 13; enforced
+    // from 14), as literals since they are newer than the target SDK
+    private static final int RECEIVER_EXPORTED = 0x2;
+    private static final int SDK_RECEIVER_FLAGS = 33;
+
+    interface Endpoint {
+        // package the endpoint lives in, for the per-package exclusions
+        String packageName();
+
+        // false if the endpoint is gone and should be dropped; where the tap was, or UNKNOWN
+        boolean deliver(int displayId, int tapX);
+    }
+
+    interface ForegroundSource {
+        // pids of the processes currently in the foreground
+        int[] foregroundPids();
+    }
+
+    private static ScrollChannelHost sInstance;
+
+    private final SparseArray<Endpoint> endpoints = new SparseArray<>();
+    private final ForegroundSource foregroundSource;
+    // foregroundSource when the apps' own reports drive it, else null
+    private final ReportedForeground reported;
+    private BroadcastReceiver receiver;
+    private Messenger hostMessenger;
+
+    ScrollChannelHost(ForegroundSource foregroundSource) {
+        this.foregroundSource = foregroundSource;
+        this.reported = foregroundSource instanceof ReportedForeground ? (ReportedForeground) foregroundSource : null;
+    }
+
+    // The SystemUI process-wide host, backed by ActivityManager and started on first use
+    static synchronized ScrollChannelHost forProcess(Context context) {
+        if (sInstance == null) {
+            sInstance = new ScrollChannelHost(new ReportedForeground());
+            sInstance.start(context);
+        }
+        return sInstance;
+    }
+
+    // Publishes the host Messenger to running apps, which register through it, and answers
+    // apps that start later and ask for it. A restarted SystemUI has lost its endpoints, so
+    // the first broadcast also gets every running app to register again.
+    void start(Context context) {
+        synchronized (endpoints) {
+            if (receiver != null) return;
+            final Context appContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+            hostMessenger = new Messenger(new Handler(Looper.getMainLooper(), new Handler.Callback() {
+                @Override
+                public boolean handleMessage(Message msg) {
+                    if (msg.what == MSG_REGISTER) {
+                        onRegister(appContext, msg);
+                    } else if (msg.what == MSG_FOREGROUND) {
+                        onForeground(msg);
+                    } else {
+                        return false;
+                    }
+                    return true;
+                }
+            }));
+            receiver = new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context c, Intent intent) {
+                    // the host Messenger is no secret; a forged request just gets it sent again
+                    publish(appContext, intent.getStringExtra(EXTRA_PACKAGE));
+                }
+            };
+            try {
+                registerExportedReceiver(appContext, receiver, new IntentFilter(ACTION_REQUEST_HOST), null);
+                publish(appContext, null);
+            } catch (Throwable t) {
+                // taps still work for SystemUI's own windows; apps just can't be reached
+                ModLog.w("channel", "couldn't start the scroll channel: {}", t);
+                receiver = null;
+            }
+        }
+    }
+
+    // To one package, or to every app listening if packageName is null
+    private void publish(Context context, String packageName) {
+        try {
+            Intent intent = new Intent(ACTION_HOST_READY);
+            if (packageName != null) intent.setPackage(packageName);
+            intent.putExtra(EXTRA_MESSENGER, hostMessenger);
+            context.sendBroadcast(intent);
+        } catch (Throwable t) {
+            ModLog.w("channel", "couldn't publish the channel host: {}", t);
+        }
+    }
+
+    // Main thread. The pid and package are the sender's claims; the uid is the binder's
+    private void onRegister(Context context, Message msg) {
+        try {
+            int pid = msg.arg1;
+            Messenger messenger = msg.replyTo;
+            Bundle data = msg.peekData();
+            String packageName = data != null ? data.getString(EXTRA_PACKAGE) : null;
+            if (pid <= 0 || packageName == null || messenger == null) return;
+            int uid = sendingUid(msg);
+            ActivityManager.RunningAppProcessInfo process = findProcess(context, pid, uid, packageName);
+            if (process == null) {
+                ModLog.w("channel", "rejected channel for {} pid={}: not the sender's process", packageName, pid);
+                return;
+            }
+            register(pid, new MessengerEndpoint(packageName, process.uid, messenger));
+            // the app reports changes from now on; where it stands already comes from this one lookup
+            if (reported != null) {
+                reported.set(pid, process.importance == ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND);
+            }
+            ModLog.i("channel", "channel registered for {} pid={}", packageName, pid);
+        } catch (Throwable t) {
+            ModLog.w("channel", "channel registration failed: {}", t);
+        }
+    }
+
+    // Main thread. Only the registered process itself can move its pid in or out of the
+    // foreground: the report has to come from its uid and name the Messenger it registered.
+    private void onForeground(Message msg) {
+        if (reported == null) return;
+        int pid = msg.arg1;
+        synchronized (endpoints) {
+            Endpoint endpoint = endpoints.get(pid);
+            if (!(endpoint instanceof MessengerEndpoint)) return;
+            MessengerEndpoint registered = (MessengerEndpoint) endpoint;
+            int uid = sendingUid(msg);
+            if ((uid != -1 && uid != registered.uid) || !registered.messenger.equals(msg.replyTo)) {
+                ModLog.w("channel", "ignored a foreground report for pid={} from uid={}", pid, uid);
+                return;
+            }
+        }
+        reported.set(pid, msg.arg2 != 0);
+    }
+
+    private static int sendingUid(Message msg) {
+        return Build.VERSION.SDK_INT >= SDK_SENDING_UID ? msg.sendingUid : -1;
+    }
+
+    // Apps and SystemUI talk across uids, so the receivers on both sides must be exported.
+    // With a permission, only senders holding it are delivered.
+    static void registerExportedReceiver(Context context, BroadcastReceiver receiver, IntentFilter filter,
+                                         String senderPermission) {
+        if (Build.VERSION.SDK_INT >= SDK_RECEIVER_FLAGS) {
+            context.registerReceiver(receiver, filter, senderPermission, null, RECEIVER_EXPORTED);
+        } else {
+            context.registerReceiver(receiver, filter, senderPermission, null);
+        }
+    }
+
+    // The running process pid if it runs as uid (any uid if -1) and that uid owns packageName,
+    // else null. Before Android 5.1 a Message doesn't say who sent it, so there only the pid
+    // and package are matched against each other.
+    static ActivityManager.RunningAppProcessInfo findProcess(Context context, int pid, int uid, String packageName) {
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        List<ActivityManager.RunningAppProcessInfo> processes = am != null ? am.getRunningAppProcesses() : null;
+        if (processes == null) return null;
+        for (ActivityManager.RunningAppProcessInfo p : processes) {
+            if (p.pid != pid) continue;
+            if (uid != -1 && p.uid != uid) return null;
+            String[] packages = context.getPackageManager().getPackagesForUid(p.uid);
+            if (packages == null) return null;
+            for (String pkg : packages) {
+                if (packageName.equals(pkg)) return p;
+            }
+            return null;
+        }
+        return null;
+    }
+
+    void register(int pid, Endpoint endpoint) {
+        synchronized (endpoints) {
+            endpoints.put(pid, endpoint);
+        }
+    }
+
+    // Sends the scroll command to the foreground processes; returns how many endpoints got it
+    int deliverToForeground(int displayId, int tapX) {
+        int[] pids = foregroundSource.foregroundPids();
+        ModuleConfig config = ModuleConfig.get();
+        int delivered = 0;
+        synchronized (endpoints) {
+            for (int pid : pids) {
+                Endpoint endpoint = endpoints.get(pid);
+                if (endpoint == null || config.isExcluded(endpoint.packageName())) continue;
+                if (endpoint.deliver(displayId, tapX)) {
+                    delivered++;
+                } else {
+                    endpoints.remove(pid);
+                    if (reported != null) reported.set(pid, false);
+                }
+            }
+        }
+        return delivered;
+    }
+
+    static final class MessengerEndpoint implements Endpoint {
+        private final String packageName;
+        final int uid;
+        final Messenger messenger;
+
+        MessengerEndpoint(String packageName, int uid, Messenger messenger) {
+            this.packageName = packageName;
+            this.uid = uid;
+            this.messenger = messenger;
+        }
+
+        @Override
+        public String packageName() {
+            return packageName;
+        }
+
+        @Override
+        public boolean deliver(int displayId, int tapX) {
+            try {
+                Message msg = Message.obtain();
+                msg.what = MSG_SCROLL_TO_TOP;
+                msg.arg1 = displayId;
+                msg.arg2 = tapX;
+                messenger.send(msg);
+                return true;
+            } catch (DeadObjectException e) {
+                return false;
+            } catch (Throwable t) {
+                ModLog.w("channel", "channel delivery failed: {}", t);
+                return true;
+            }
+        }
+    }
+
+    // Foreground processes as the apps report them. The array handed to taps is only rebuilt
+    // when a report changes something, so a tap neither allocates nor leaves the process.
+    static final class ReportedForeground implements ForegroundSource {
+        private final SparseBooleanArray foreground = new SparseBooleanArray();
+        private int[] pids = new int[0];
+
+        synchronized void set(int pid, boolean inForeground) {
+            if (foreground.get(pid) == inForeground) return;
+            if (inForeground) {
+                foreground.put(pid, true);
+            } else {
+                foreground.delete(pid);
+            }
+            int[] next = new int[foreground.size()];
+            for (int i = 0; i < next.length; i++) next[i] = foreground.keyAt(i);
+            pids = next;
+        }
+
+        @Override
+        public synchronized int[] foregroundPids() {
+            return pids;
+        }
+    }
+}
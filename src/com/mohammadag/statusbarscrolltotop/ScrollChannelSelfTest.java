@@ -0,0 +1,96 @@
+package com.yourdomain.statusbarscroll;
+
+import java.io.PrintWriter;
+
+// Drives a private ScrollChannelHost through local stand-ins for the foreground source and
+// the app endpoints, so the channel's delivery rules can be checked on a device without any
+// app involved: "dumpsys activity service com.android.systemui/.SystemUIService
+// statusbarscroll-channel-test". Nothing is sent to a real process.
+final class ScrollChannelSelfTest {
+
+    private static final String PACKAGE = "com.yourdomain.statusbarscroll.selftest";
+
+    private ScrollChannelSelfTest() { }
+
+    // Prints one line per check; returns the number of failed checks
+    static int run(PrintWriter pw) {
+        FakeForeground foreground = new FakeForeground();
+        ScrollChannelHost host = new ScrollChannelHost(foreground);
+        RecordingEndpoint first = new RecordingEndpoint();
+        RecordingEndpoint second = new RecordingEndpoint();
+        host.register(101, first);
+        host.register(102, second);
+        int failures = 0;
+
+        foreground.pids = new int[]{101};
+        int delivered = host.deliverToForeground(0, 42);
+        failures += check(pw, "only the foreground endpoint gets the tap",
+                delivered == 1 && first.count == 1 && second.count == 0);
+        failures += check(pw, "the tap position reaches the endpoint", first.lastDisplay == 0 && first.lastX == 42);
+
+        foreground.pids = new int[]{101, 102};
+        delivered = host.deliverToForeground(RootViewResolver.UNKNOWN, RootViewResolver.UNKNOWN);
+        failures += check(pw, "every foreground endpoint gets the tap (split screen)",
+                delivered == 2 && first.count == 2 && second.count == 1);
+
+        first.alive = false;
+        host.deliverToForeground(0, 0);
+        first.alive = true;
+        delivered = host.deliverToForeground(0, 0);
+        failures += check(pw, "a dead endpoint is dropped", delivered == 1 && first.count == 2);
+
+        foreground.pids = new int[]{103};
+        failures += check(pw, "a foreground process without an endpoint gets nothing", host.deliverToForeground(0, 0) == 0);
+
+        ScrollChannelHost.ReportedForeground reported = new ScrollChannelHost.ReportedForeground();
+        ScrollChannelHost reporting = new ScrollChannelHost(reported);
+        RecordingEndpoint background = new RecordingEndpoint();
+        RecordingEndpoint front = new RecordingEndpoint();
+        reporting.register(101, background);
+        reporting.register(102, front);
+        reported.set(101, true);
+        reported.set(102, true);
+        reported.set(101, false);
+        failures += check(pw, "reported foreground changes pick the recipients",
+                reporting.deliverToForeground(0, 0) == 1 && background.count == 0 && front.count == 1);
+
+        pw.println("channel self-test: " + (failures == 0 ? "passed" : failures + " check(s) failed"));
+        return failures;
+    }
+
+    private static int check(PrintWriter pw, String what, boolean ok) {
+        pw.println("  " + (ok ? "ok    " : "FAILED") + " " + what);
+        return ok ? 0 : 1;
+    }
+
+    private static final class FakeForeground implements ScrollChannelHost.ForegroundSource {
+        int[] pids = new int[0];
+
+        @Override
+        public int[] foregroundPids() {
+            return pids;
+        }
+    }
+
+    // Counts deliveries; answers like a Messenger whose process died while alive is false
+    private static final class RecordingEndpoint implements ScrollChannelHost.Endpoint {
+        boolean alive = true;
+        int count;
+        int lastDisplay;
+        int lastX;
+
+        @Override
+        public String packageName() {
+            return PACKAGE;
+        }
+
+        @Override
+        public boolean deliver(int displayId, int tapX) {
+            if (!alive) return false;
+            count++;
+            lastDisplay = displayId;
+            lastX = tapX;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.yourdomain.statusbarscroll;
+
+import android.view.View;
+
+import com.yourdomain.statusbarscroll.core.ClassKindCache;
+import com.yourdomain.statusbarscroll.core.ScrollKind;
+
+import de.robv.android.xposed.XposedHelpers;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+// Android side of the scroll-kind classification: decides the kind of a View class once,
+// through the core ClassKindCache, so tree traversal costs one identity lookup per node
+// instead of ClassLoader lookups.
+final class ScrollKinds {
+
+    static final int KIND_NONE = ScrollKind.NONE;
+    static final int KIND_ABS_LIST_VIEW = ScrollKind.ABS_LIST_VIEW;
+    static final int KIND_SCROLL_VIEW = ScrollKind.SCROLL_VIEW;
+    static final int KIND_WEB_VIEW = ScrollKind.WEB_VIEW;
+    static final int KIND_RECYCLER_VIEW = ScrollKind.RECYCLER_VIEW;
+    static final int KIND_NESTED_SCROLL_VIEW = ScrollKind.NESTED_SCROLL_VIEW;
+
+    private static final String[] RECYCLER_VIEW_CLASSES = new String[]{
+            "androidx.recyclerview.widget.RecyclerView",
+            "android.support.v7.widget.RecyclerView"
+    };
+
+    private static final String[] NESTED_SCROLL_VIEW_CLASSES = new String[]{
+            "androidx.core.widget.NestedScrollView",
+            "android.support.v4.widget.NestedScrollView"
+    };
+
+    // ViewPager2 pages through this internal RecyclerView
+    private static final String VIEW_PAGER2_RECYCLER_VIEW = "androidx.viewpager2.widget.ViewPager2$RecyclerViewImpl";
+
+    private static final Class<?>[] NO_CLASSES = new Class<?>[0];
+
+    private static final ClassKindCache KIND_BY_CLASS = new ClassKindCache(new ClassKindCache.Classifier() {
+        @Override
+        public int classify(Class<?> c) {
+            return ScrollKinds.classify(c);
+        }
+    });
+
+    // Keyed weakly so app ClassLoaders can go away
+    private static final Map<ClassLoader, Class<?>[]> RECYCLER_VIEWS_BY_LOADER = new WeakHashMap<>();
+    private static final Map<ClassLoader, Class<?>[]> NESTED_SCROLL_VIEWS_BY_LOADER = new WeakHashMap<>();
+
+    private ScrollKinds() { }
+
+    static int kindOf(View v) {
+        if (v == null) return KIND_NONE;
+        return KIND_BY_CLASS.kindOf(v.getClass());
+    }
+
+    static String nameOf(int kind) {
+        return ScrollKind.nameOf(kind);
+    }
+
+    private static int classify(Class<?> c) {
+        if (android.widget.AbsListView.class.isAssignableFrom(c)) return KIND_ABS_LIST_VIEW;
+        if (android.widget.ScrollView.class.isAssignableFrom(c)) return KIND_SCROLL_VIEW;
+        if (android.webkit.WebView.class.isAssignableFrom(c)) return KIND_WEB_VIEW;
+
+        // A container, not a scroller: the search goes on into the current page's list
+        // instead of "scrolling" the pager back to its first page
+        if (VIEW_PAGER2_RECYCLER_VIEW.equals(c.getName())) return KIND_NONE;
+
+        // RecyclerView/NestedScrollView may be from android.support or androidx, bundled by the app
+        ClassLoader cl = c.getClassLoader();
+        if (isAnyAssignableFrom(resolve(RECYCLER_VIEWS_BY_LOADER, RECYCLER_VIEW_CLASSES, cl), c)) return KIND_RECYCLER_VIEW;
+        if (isAnyAssignableFrom(resolve(NESTED_SCROLL_VIEWS_BY_LOADER, NESTED_SCROLL_VIEW_CLASSES, cl), c)) return KIND_NESTED_SCROLL_VIEW;
+        return KIND_NONE;
+    }
+
+    // The RecyclerView and NestedScrollView classes the app bundles in cl, androidx or support
+    static Class<?>[] libraryScrollers(ClassLoader cl) {
+        Class<?>[] recyclerViews = resolve(RECYCLER_VIEWS_BY_LOADER, RECYCLER_VIEW_CLASSES, cl);
+        Class<?>[] nestedScrollViews = resolve(NESTED_SCROLL_VIEWS_BY_LOADER, NESTED_SCROLL_VIEW_CLASSES, cl);
+        Class<?>[] all = java.util.Arrays.copyOf(recyclerViews, recyclerViews.length + nestedScrollViews.length);
+        System.arraycopy(nestedScrollViews, 0, all, recyclerViews.length, nestedScrollViews.length);
+        return all;
+    }
+
+    static boolean isAnyAssignableFrom(Class<?>[] bases, Class<?> c) {
+        for (Class<?> base : bases) {
+            if (base.isAssignableFrom(c)) return true;
+        }
+        return false;
+    }
+
+    // Library classes by name, looked up once per app ClassLoader
+    static Class<?>[] resolve(Map<ClassLoader, Class<?>[]> cache, String[] names, ClassLoader cl) {
+        if (cl == null) return NO_CLASSES; // boot classpath never carries library widgets
+        synchronized (cache) {
+            Class<?>[] classes = cache.get(cl);
+            if (classes != null) return classes;
+        }
+        Class<?>[] found = new Class<?>[names.length];
+        int n = 0;
+        for (String name : names) {
+            Class<?> c = XposedHelpers.findClassIfExists(name, cl);
+            if (c != null) found[n++] = c;
+        }
+        Class<?>[] classes = n == 0 ? NO_CLASSES : java.util.Arrays.copyOf(found, n);
+        synchronized (cache) {
+            cache.put(cl, classes);
+        }
+        return classes;
+    }
+}
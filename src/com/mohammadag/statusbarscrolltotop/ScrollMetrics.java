@@ -0,0 +1,235 @@
+package com.yourdomain.statusbarscroll;
+
+import com.yourdomain.statusbarscroll.core.ScrollKind;
+
+import java.io.PrintWriter;
+
+// Tap-to-scroll instrumentation: latency histograms for each stage, nodes visited per
+// search, cache hit rates and a per-kind outcome breakdown. Everything lives in fixed-size
+// primitive arrays allocated up front, so recording a tap allocates nothing.
+// Written on the main thread; the dump may read slightly torn counters, which is fine.
+final class ScrollMetrics {
+
+    // Stage histograms
+    static final int STAGE_DETECT = 0;  // touch event time -> gesture recognised
+    static final int STAGE_RESOLVE = 1; // root views + target search, including the worker hop
+    static final int STAGE_SCROLL = 2;  // scroll dispatch
+    static final int STAGE_TOTAL = 3;   // touch event time -> scroll dispatched
+    static final int STAGE_CAPTURE = 4; // main-thread part of the search: roots, memo, snapshot copy
+    private static final String[] STAGE_NAMES = new String[]{"detect", "resolve", "scroll", "total", "capture"};
+
+    // Outcomes besides "scrolled a view of kind X"
+    static final int OUTCOME_NO_ROOTS = 0;
+    static final int OUTCOME_NO_SCROLLABLE = 1; // nothing in SystemUI's windows, handed to apps
+    static final int OUTCOME_DELIVERED = 2;     // ... and at least one app endpoint took it
+    static final int OUTCOME_TRUNCATED = 3;     // a search ran out of budget
+    static final int OUTCOME_ERROR = 4;
+    private static final String[] OUTCOME_NAMES = new String[]{"no_roots", "no_scrollable", "delivered_to_app", "truncated", "error"};
+
+    private static final int KIND_COUNT = ScrollKind.COUNT;
+
+    private final Histogram[] stages = new Histogram[STAGE_NAMES.length];
+    private final Histogram nodes = new Histogram();
+    private final long[] scrolledByKind = new long[KIND_COUNT];
+    private final long[] outcomes = new long[OUTCOME_NAMES.length];
+    private long memoHits;
+    private long memoMisses;
+    private long taps;
+    private long coalesced; // taps folded into a resolve already running
+    private long escalated; // taps that turned a running animation into a jump
+    private long restored;  // taps that put the last scrolled view back where it was
+    private long windowsSearched;
+    private long windowsSkipped; // other display, bar/IME/shade windows, not under the tap
+
+    // Set when a tap is detected, consumed by the resolve that follows
+    private long tapEventUptime;
+
+    // First tap of this SystemUI process: cold if it came before the idle warm-up finished
+    private long firstTapMicros = -1;
+    private boolean firstTapWarm;
+    private long warmUpMicros = -1; // -1 until the warm-up has run
+
+    ScrollMetrics() {
+        for (int i = 0; i < stages.length; i++) stages[i] = new Histogram();
+    }
+
+    void onTapDetected(long eventUptimeMillis, long nowUptimeMillis) {
+        taps++;
+        tapEventUptime = eventUptimeMillis;
+        stages[STAGE_DETECT].record((nowUptimeMillis - eventUptimeMillis) * 1000);
+    }
+
+    void recordStage(int stage, long nanos) {
+        stages[stage].record(nanos / 1000);
+    }
+
+    // Closes the tap started by onTapDetected; no-op for scrolls not started by a tap
+    void onScrollDispatched(long nowUptimeMillis) {
+        if (tapEventUptime == 0) return;
+        long micros = (nowUptimeMillis - tapEventUptime) * 1000;
+        stages[STAGE_TOTAL].record(micros);
+        tapEventUptime = 0;
+        if (firstTapMicros < 0) {
+            firstTapMicros = micros;
+            firstTapWarm = warmUpMicros >= 0;
+        }
+    }
+
+    void recordWarmUp(long nanos) {
+        warmUpMicros = nanos / 1000;
+    }
+
+    void recordNodesVisited(int visited) {
+        nodes.record(visited);
+    }
+
+    void recordWindows(int searched, int skipped) {
+        windowsSearched += searched;
+        windowsSkipped += skipped;
+    }
+
+    void recordMemo(boolean hit) {
+        if (hit) memoHits++;
+        else memoMisses++;
+    }
+
+    void recordScrolled(int kind) {
+        if (kind >= 0 && kind < KIND_COUNT) scrolledByKind[kind]++;
+    }
+
+    void recordOutcome(int outcome) {
+        outcomes[outcome]++;
+    }
+
+    void recordCoalesced() {
+        coalesced++;
+    }
+
+    void recordEscalated() {
+        escalated++;
+    }
+
+    void recordRestored() {
+        restored++;
+    }
+
+    void dump(PrintWriter pw, HookResolutionCache hookCache) {
+        pw.println("StatusBarScroll metrics:");
+        pw.println("  taps: " + taps + " (coalesced=" + coalesced + " escalated=" + escalated + " restored=" + restored + ")");
+        pw.println("  first tap: " + (firstTapMicros < 0 ? "none yet" : firstTapMicros + "us " + (firstTapWarm ? "warm" : "cold"))
+                + ", warm-up: " + (warmUpMicros < 0 ? "not run" : warmUpMicros + "us"));
+        for (int i = 0; i < stages.length; i++) {
+            pw.print("  " + STAGE_NAMES[i] + " (us): ");
+            stages[i].dumpText(pw);
+        }
+        pw.print("  nodes visited: ");
+        nodes.dumpText(pw);
+        pw.println("  windows: searched=" + windowsSearched + " skipped=" + windowsSkipped);
+        pw.println("  target memo: hits=" + memoHits + " misses=" + memoMisses + " rate=" + percent(memoHits, memoMisses) + "%");
+        if (hookCache != null) {
+            pw.println("  hook cache: hits=" + hookCache.getHits() + " misses=" + hookCache.getMisses());
+        }
+        pw.print("  scrolled by kind:");
+        for (int k = 0; k < KIND_COUNT; k++) pw.print(" " + ScrollKinds.nameOf(k) + "=" + scrolledByKind[k]);
+        pw.println();
+        pw.print("  outcomes:");
+        for (int o = 0; o < outcomes.length; o++) pw.print(" " + OUTCOME_NAMES[o] + "=" + outcomes[o]);
+        pw.println();
+    }
+
+    String toJson(HookResolutionCache hookCache) {
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append("{\"taps\":").append(taps);
+        sb.append(",\"coalesced\":").append(coalesced);
+        sb.append(",\"escalated\":").append(escalated);
+        sb.append(",\"restored\":").append(restored);
+        sb.append(",\"first_tap_us\":").append(firstTapMicros);
+        sb.append(",\"first_tap_warm\":").append(firstTapWarm);
+        sb.append(",\"warm_up_us\":").append(warmUpMicros);
+        sb.append(",\"latency_us\":{");
+        for (int i = 0; i < stages.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append('"').append(STAGE_NAMES[i]).append("\":");
+            stages[i].appendJson(sb);
+        }
+        sb.append("},\"nodes_visited\":");
+        nodes.appendJson(sb);
+        sb.append(",\"windows\":{\"searched\":").append(windowsSearched)
+                .append(",\"skipped\":").append(windowsSkipped).append('}');
+        sb.append(",\"target_memo\":{\"hits\":").append(memoHits).append(",\"misses\":").append(memoMisses).append('}');
+        if (hookCache != null) {
+            sb.append(",\"hook_cache\":{\"hits\":").append(hookCache.getHits())
+                    .append(",\"misses\":").append(hookCache.getMisses()).append('}');
+        }
+        sb.append(",\"scrolled_by_kind\":{");
+        for (int k = 0; k < KIND_COUNT; k++) {
+            if (k > 0) sb.append(',');
+            sb.append('"').append(ScrollKinds.nameOf(k)).append("\":").append(scrolledByKind[k]);
+        }
+        sb.append("},\"outcomes\":{");
+        for (int o = 0; o < outcomes.length; o++) {
+            if (o > 0) sb.append(',');
+            sb.append('"').append(OUTCOME_NAMES[o]).append("\":").append(outcomes[o]);
+        }
+        sb.append("}}");
+        return sb.toString();
+    }
+
+    private static long percent(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? 0 : 100 * hits / total;
+    }
+
+    // Power-of-two buckets: bucket i holds values in [2^(i-1), 2^i), bucket 0 holds 0
+    static final class Histogram {
+        private static final int BUCKETS = 32;
+
+        private final long[] buckets = new long[BUCKETS];
+        private long count;
+        private long sum;
+        private long max;
+
+        void record(long value) {
+            if (value < 0) value = 0;
+            int b = 64 - Long.numberOfLeadingZeros(value);
+            buckets[b < BUCKETS ? b : BUCKETS - 1]++;
+            count++;
+            sum += value;
+            if (value > max) max = value;
+        }
+
+        // Upper bound of the bucket holding the given quantile
+        long quantile(double q) {
+            if (count == 0) return 0;
+            long rank = (long) Math.ceil(q * count);
+            long seen = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                seen += buckets[b];
+                if (seen >= rank) return b == 0 ? 0 : Math.min(max, (1L << b) - 1);
+            }
+            return max;
+        }
+
+        void dumpText(PrintWriter pw) {
+            pw.println("n=" + count + " avg=" + (count == 0 ? 0 : sum / count)
+                    + " p50<=" + quantile(0.5) + " p90<=" + quantile(0.9) + " p99<=" + quantile(0.99) + " max=" + max);
+        }
+
+        void appendJson(StringBuilder sb) {
+            sb.append("{\"count\":").append(count)
+                    .append(",\"sum\":").append(sum)
+                    .append(",\"max\":").append(max)
+                    .append(",\"p50\":").append(quantile(0.5))
+                    .append(",\"p90\":").append(quantile(0.9))
+                    .append(",\"p99\":").append(quantile(0.99))
+                    .append(",\"buckets\":[");
+            int last = BUCKETS - 1;
+            while (last > 0 && buckets[last] == 0) last--;
+            for (int b = 0; b <= last; b++) {
+                if (b > 0) sb.append(',');
+                sb.append(buckets[b]);
+            }
+            sb.append("]}");
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.yourdomain.statusbarscroll;
+
+import android.view.View;
+
+import java.lang.ref.WeakReference;
+
+// Where recently scrolled views were before they were sent to the top, so a second tap soon
+// after can put them back. A fixed number of slots in parallel primitive arrays with the views
+// held weakly: memory stays the same however many lists the process creates, and a view that
+// goes away just leaves a dead slot. Saving reuses the view's own slot, else a dead one, else
+// the least recently saved. Main thread only.
+final class ScrollPositionMemory {
+
+    // position for views that only have a scroll offset (ScrollView, WebView...)
+    static final int NO_POSITION = -1;
+
+    private final WeakReference<?>[] views;
+    private final int[] positions; // adapter position of the first visible item, or NO_POSITION
+    private final int[] offsets;   // that item's top below the padding, or the scrollY
+    private final long[] savedAt;  // uptime millis; 0 for a free slot
+    private int latest = -1;       // slot saved last
+
+    ScrollPositionMemory(int capacity) {
+        views = new WeakReference<?>[capacity];
+        positions = new int[capacity];
+        offsets = new int[capacity];
+        savedAt = new long[capacity];
+    }
+
+    void save(View view, int position, int offset, long now) {
+        int slot = -1;
+        int oldest = 0;
+        for (int i = 0; i < views.length; i++) {
+            Object v = views[i] != null ? views[i].get() : null;
+            if (v == view) {
+                slot = i;
+                break;
+            }
+            if (v == null && slot < 0) slot = i;
+            if (savedAt[i] < savedAt[oldest]) oldest = i;
+        }
+        if (slot < 0) slot = oldest;
+        if (views[slot] == null || views[slot].get() != view) views[slot] = new WeakReference<>(view);
+        positions[slot] = position;
+        offsets[slot] = offset;
+        savedAt[slot] = now;
+        latest = slot;
+    }
+
+    // The slot saved last, if that was less than windowMs ago and its view is still alive; else -1
+    int latest(long now, long windowMs) {
+        int slot = latest;
+        if (slot < 0 || now - savedAt[slot] >= windowMs || viewAt(slot) == null) return -1;
+        return slot;
+    }
+
+    View viewAt(int slot) {
+        WeakReference<?> ref = views[slot];
+        return ref != null ? (View) ref.get() : null;
+    }
+
+    int positionAt(int slot) {
+        return positions[slot];
+    }
+
+    int offsetAt(int slot) {
+        return offsets[slot];
+    }
+
+    void remove(int slot) {
+        views[slot] = null;
+        savedAt[slot] = 0;
+        if (latest == slot) latest = -1;
+    }
+}
@@ -0,0 +1,101 @@
+package com.yourdomain.statusbarscroll;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.view.View;
+
+import java.lang.ref.WeakReference;
+
+// Single-flight front end for scroll-to-top requests. Main thread only.
+//  - A tap while a resolve is queued or running joins it: no second root scan is started.
+//  - A tap while the last smooth scroll is still animating escalates: the animation is
+//    superseded by an instant jump on the same target, without a new search.
+//  - A tap soon after a scroll reached the top puts the view back where it was
+//    (ScrollStrategies.restoreLast), again without a search.
+//  - Any other tap starts a resolve; its result is reported back through onScrolled()
+//    or onNothingScrolled().
+final class ScrollRequestScheduler {
+
+    // A smooth scroll counts as running this long after dispatch, if its target isn't at the top yet
+    static final long ANIMATION_WINDOW_MS = 1500;
+
+    // A resolve not reported back by then is considered lost, so a lost callback can't wedge taps
+    private static final long RESOLVE_TIMEOUT_MS = 1000;
+
+    private final Handler handler;
+    private final Runnable resolve;
+    private final ScrollMetrics metrics;
+
+    private boolean inFlight;
+    private long inFlightSince;
+
+    // Where the tap that started the current resolve landed, for the root filter
+    private int tapDisplayId = RootViewResolver.UNKNOWN;
+    private int tapX = RootViewResolver.UNKNOWN;
+
+    // Target of the last smooth scroll; cleared once it settles or is escalated. Weak, so a
+    // window closed mid-animation isn't kept alive until the next tap.
+    private WeakReference<View> animating;
+    private long animatingSince;
+
+    ScrollRequestScheduler(Handler handler, Runnable resolve, ScrollMetrics metrics) {
+        this.handler = handler;
+        this.resolve = resolve;
+        this.metrics = metrics;
+    }
+
+    // displayId and tapX (screen x) may be RootViewResolver.UNKNOWN
+    void request(int displayId, int tapX) {
+        long now = SystemClock.uptimeMillis();
+        if (inFlight && now - inFlightSince < RESOLVE_TIMEOUT_MS) {
+            metrics.recordCoalesced();
+            ModLog.d("tap", "tap coalesced into the running resolve");
+            return;
+        }
+        View target = animating != null ? animating.get() : null;
+        animating = null;
+        if (isAnimating(target, animatingSince, now)) {
+            metrics.recordEscalated();
+            ModLog.d("tap", "tap during animation, jumping {} to the top", target.getClass());
+            ScrollStrategies.jumpToTop(target);
+            return;
+        }
+        if (ScrollStrategies.restoreLast()) {
+            metrics.recordRestored();
+            ModLog.d("tap", "tap again, restored the position before the last scroll");
+            return;
+        }
+        inFlight = true;
+        inFlightSince = now;
+        tapDisplayId = displayId;
+        this.tapX = tapX;
+        handler.post(resolve);
+    }
+
+    int getTapDisplayId() {
+        return tapDisplayId;
+    }
+
+    int getTapX() {
+        return tapX;
+    }
+
+    // The resolve scrolled target; smooth if it started an animation a later tap may escalate
+    void onScrolled(View target, boolean smooth) {
+        inFlight = false;
+        animating = smooth ? new WeakReference<>(target) : null;
+        animatingSince = SystemClock.uptimeMillis();
+    }
+
+    // The resolve ended without scrolling anything in this process (no roots, handed to an app, error)
+    void onNothingScrolled() {
+        inFlight = false;
+        animating = null;
+    }
+
+    // True if a smooth scroll of v started at since is, by now, still on its way to the top
+    static boolean isAnimating(View v, long since, long now) {
+        if (v == null || now - since >= ANIMATION_WINDOW_MS) return false;
+        return v.isShown() && v.canScrollVertically(-1);
+    }
+}
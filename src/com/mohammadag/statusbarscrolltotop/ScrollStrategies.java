@@ -0,0 +1,544 @@
+package com.yourdomain.statusbarscroll;
+
+import android.os.Build;
+import android.os.SystemClock;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.view.ViewTreeObserver;
+import android.widget.AbsListView;
+import android.widget.ListView;
+
+import com.yourdomain.statusbarscroll.core.ClassKindCache;
+
+import de.robv.android.xposed.XposedHelpers;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+// Registry of scroll strategies, one per concrete view class, built the first time a class is
+// scrolled. Library widgets (RecyclerView, NestedScrollView, AppBarLayout) are reached through
+// Methods resolved at that point, so a tap never walks getMethod() again.
+// Besides moving the target itself, a dispatch climbs from horizontal-only carousels to the
+// vertical scroller around them and re-expands collapsed AppBarLayouts in a CoordinatorLayout.
+// Where the scroller was before is kept for a while, so tapping again can put it back.
+final class ScrollStrategies {
+
+    // A tap this soon after a scroll to the top, with the view still there, restores it
+    static final long RESTORE_WINDOW_MS = 3000;
+
+    private static final Map<Class<?>, ScrollStrategy> BY_CLASS = new WeakHashMap<>();
+
+    private static final String[] COORDINATOR_LAYOUT_CLASSES = new String[]{
+            "androidx.coordinatorlayout.widget.CoordinatorLayout",
+            "android.support.design.widget.CoordinatorLayout"
+    };
+
+    private static final String[] APP_BAR_LAYOUT_CLASSES = new String[]{
+            "com.google.android.material.appbar.AppBarLayout",
+            "android.support.design.widget.AppBarLayout"
+    };
+
+    private static final int ROLE_OTHER = 0;
+    private static final int ROLE_COORDINATOR = 1;
+    private static final int ROLE_APP_BAR = 2;
+
+    private static final Map<ClassLoader, Class<?>[]> COORDINATORS_BY_LOADER = new WeakHashMap<>();
+    private static final Map<ClassLoader, Class<?>[]> APP_BARS_BY_LOADER = new WeakHashMap<>();
+
+    private static final ClassKindCache ROLE_BY_CLASS = new ClassKindCache(c -> {
+        ClassLoader cl = c.getClassLoader();
+        if (ScrollKinds.isAnyAssignableFrom(ScrollKinds.resolve(COORDINATORS_BY_LOADER, COORDINATOR_LAYOUT_CLASSES, cl), c)) return ROLE_COORDINATOR;
+        if (ScrollKinds.isAnyAssignableFrom(ScrollKinds.resolve(APP_BARS_BY_LOADER, APP_BAR_LAYOUT_CLASSES, cl), c)) return ROLE_APP_BAR;
+        return ROLE_OTHER;
+    });
+
+    // AppBarLayout.setExpanded(boolean, boolean) per concrete class; NO_METHOD if it has none
+    private static final Map<Class<?>, Method> SET_EXPANDED_BY_CLASS = new WeakHashMap<>();
+    private static final Method NO_METHOD = findMethod(Object.class, "toString");
+
+    // Bumped by every dispatch. Steps an earlier dispatch posted for later (the smooth part of a
+    // fast scroll) check it and stand down once a newer dispatch, e.g. an escalated jump, took over.
+    // Main thread only.
+    private static int sDispatch;
+
+    // Pre-scroll positions of the last few scrolled views, per process; main thread only
+    private static final ScrollPositionMemory POSITIONS = new ScrollPositionMemory(16);
+
+    // The view our last smooth dispatch is moving up, and when it started; main thread only
+    private static WeakReference<View> sAnimating;
+    private static long sAnimatingSince;
+
+    private ScrollStrategies() { }
+
+    // Scrolls the target (or the vertical scroller holding it) to the top and expands its app bars,
+    // remembering where it was for restoreLast(). Must be called on the target's UI thread.
+    static void scrollToTop(View target, boolean instant, int fastScrollScreens) {
+        dispatch(target, instant, fastScrollScreens, true);
+    }
+
+    // Cuts a running scroll to the top short with an instant jump; the position saved by the
+    // scroll it supersedes stays the one to restore
+    static void jumpToTop(View target) {
+        dispatch(target, true, 0, false);
+    }
+
+    // Puts the view scrolled to the top last back where it was, if that was under
+    // RESTORE_WINDOW_MS ago and it is still resting at the top. False if there is nothing to
+    // restore and the tap should scroll as usual. A saved position is used once: it is only
+    // dropped by a restore that happened, else it stays until it ages out of the window.
+    static boolean restoreLast() {
+        if (!ModuleConfig.get().restoreOnTapAgain) return false;
+        int slot = POSITIONS.latest(SystemClock.uptimeMillis(), RESTORE_WINDOW_MS);
+        if (slot < 0) return false;
+        View v = POSITIONS.viewAt(slot);
+        int position = POSITIONS.positionAt(slot);
+        int offset = POSITIONS.offsetAt(slot);
+        // scrolled away since, or no longer on screen: this tap is a new scroll to the top
+        if (!v.isShown() || v.canScrollVertically(-1)) return false;
+        sDispatch++;
+        sAnimating = null;
+        try {
+            if (position == ScrollPositionMemory.NO_POSITION) {
+                v.scrollTo(v.getScrollX(), offset);
+            } else if (v instanceof ListView) {
+                ((ListView) v).setSelectionFromTop(position, offset);
+            } else if (v instanceof AbsListView) {
+                ((AbsListView) v).setSelection(position);
+            } else {
+                ScrollStrategy strategy = forClass(v);
+                if (!(strategy instanceof RecyclerViewStrategy)) return false;
+                ((RecyclerViewStrategy) strategy).restore(v, position, offset);
+            }
+            POSITIONS.remove(slot);
+            ModLog.d("scroll", "restored {} to position {} offset {}", v.getClass(), position, offset);
+            return true;
+        } catch (Throwable t) {
+            ModLog.w("scroll", "restoring {} failed: {}", v.getClass(), t);
+            return false;
+        }
+    }
+
+    private static void dispatch(View target, boolean instant, int fastScrollScreens, boolean remember) {
+        sDispatch++;
+        View v = verticalScrollerFor(target);
+        ScrollStrategy strategy = forClass(v);
+        if (remember) {
+            try {
+                savePosition(v, strategy);
+            } catch (Throwable t) {
+                ModLog.w("scroll", "couldn't save the position of {}: {}", v.getClass(), t);
+            }
+        }
+        boolean moved = false;
+        try {
+            moved = strategy.scrollToTop(v, instant, fastScrollScreens);
+        } catch (Throwable t) {
+            ModLog.w("scroll", "{} strategy failed: {}", v.getClass(), t);
+        }
+        if (!moved && strategy != GENERIC) {
+            try {
+                GENERIC.scrollToTop(v, instant, fastScrollScreens);
+            } catch (Throwable ignored) { }
+        }
+        expandAppBars(v, instant);
+        if (instant) {
+            sAnimating = null;
+        } else {
+            sAnimating = new WeakReference<>(v);
+            sAnimatingSince = SystemClock.uptimeMillis();
+        }
+    }
+
+    // True while our own smooth scroll of v is still on its way up: where v is now is a spot
+    // halfway to the top, not where the user left it
+    private static boolean isOwnAnimation(View v, long now) {
+        View animating = sAnimating != null ? sAnimating.get() : null;
+        return animating == v && ScrollRequestScheduler.isAnimating(v, sAnimatingSince, now);
+    }
+
+    // Lists keep the first visible item and its offset below the padding, as setSelectionFromTop
+    // and scrollToPositionWithOffset take them; everything else its scrollY. Nothing is kept for
+    // a view already at the top, or one that only scrolls inside (a WebView page's container).
+    private static void savePosition(View v, ScrollStrategy strategy) {
+        if (!v.canScrollVertically(-1)) return;
+        long now = SystemClock.uptimeMillis();
+        // a position saved earlier is overwritten: the user may have scrolled back down by hand
+        if (isOwnAnimation(v, now)) return;
+        int position = ScrollPositionMemory.NO_POSITION;
+        int offset = v.getScrollY();
+        if (v instanceof ViewGroup && ((ViewGroup) v).getChildCount() > 0) {
+            ViewGroup vg = (ViewGroup) v;
+            int first = -1;
+            if (v instanceof AbsListView) {
+                first = ((AbsListView) v).getFirstVisiblePosition();
+            } else if (strategy instanceof RecyclerViewStrategy) {
+                first = ((RecyclerViewStrategy) strategy).firstVisiblePosition(vg);
+            }
+            if (first >= 0) {
+                position = first;
+                offset = vg.getChildAt(0).getTop() - vg.getPaddingTop();
+            }
+        }
+        if (position == ScrollPositionMemory.NO_POSITION && offset <= 0) return;
+        POSITIONS.save(v, position, offset, now);
+    }
+
+    static ScrollStrategy forClass(View v) {
+        Class<?> c = v.getClass();
+        synchronized (BY_CLASS) {
+            ScrollStrategy s = BY_CLASS.get(c);
+            if (s != null) return s;
+        }
+        ScrollStrategy s;
+        try {
+            s = create(ScrollKinds.kindOf(v), c);
+        } catch (Throwable t) {
+            ModLog.w("scroll", "no strategy for {}: {}", c, t);
+            s = GENERIC;
+        }
+        synchronized (BY_CLASS) {
+            BY_CLASS.put(c, s);
+        }
+        return s;
+    }
+
+    private static ScrollStrategy create(int kind, Class<?> c) throws NoSuchMethodException {
+        switch (kind) {
+            case ScrollKinds.KIND_RECYCLER_VIEW: return new RecyclerViewStrategy(c);
+            case ScrollKinds.KIND_ABS_LIST_VIEW: return ABS_LIST_VIEW;
+            case ScrollKinds.KIND_SCROLL_VIEW: return new ScrollViewStrategy(c);
+            case ScrollKinds.KIND_NESTED_SCROLL_VIEW: return new NestedScrollViewStrategy(c);
+            case ScrollKinds.KIND_WEB_VIEW: return WEB_VIEW;
+            default: return GENERIC;
+        }
+    }
+
+    // Position to jump to before smooth-scrolling the rest of the way, or -1 when the list
+    // is already within `screens` screens of the top (or fast scroll is off)
+    static int nearTopJumpPosition(int firstVisible, int visibleCount, int screens) {
+        if (screens <= 0 || firstVisible <= 0) return -1;
+        int window = screens * Math.max(visibleCount, 1);
+        return firstVisible > window ? window : -1;
+    }
+
+    // A row that only scrolls sideways (carousel RecyclerView, tab strip) isn't what the user
+    // means by "top": climb to the nearest ancestor we know how to move that scrolls vertically.
+    // SystemUI's snapshot never enters a scroller, so this matters for the app-side registry,
+    // which also holds the carousels nested inside lists.
+    static View verticalScrollerFor(View target) {
+        if (!isHorizontalOnly(target)) return target;
+        for (ViewParent p = target.getParent(); p instanceof View; p = p.getParent()) {
+            View pv = (View) p;
+            if (ScrollKinds.kindOf(pv) != ScrollKinds.KIND_NONE && !isHorizontalOnly(pv)) return pv;
+        }
+        return target;
+    }
+
+    static boolean isHorizontalOnly(View v) {
+        return !v.canScrollVertically(-1) && !v.canScrollVertically(1)
+                && (v.canScrollHorizontally(-1) || v.canScrollHorizontally(1));
+    }
+
+    // Scrolling a list inside a CoordinatorLayout leaves a collapsed toolbar hidden;
+    // expand every AppBarLayout that is a direct child of an enclosing coordinator
+    private static void expandAppBars(View scroller, boolean instant) {
+        for (ViewParent p = scroller.getParent(); p instanceof ViewGroup; p = p.getParent()) {
+            ViewGroup parent = (ViewGroup) p;
+            if (ROLE_BY_CLASS.kindOf(parent.getClass()) != ROLE_COORDINATOR) continue;
+            for (int i = 0, n = parent.getChildCount(); i < n; i++) {
+                View child = parent.getChildAt(i);
+                if (ROLE_BY_CLASS.kindOf(child.getClass()) != ROLE_APP_BAR) continue;
+                Method setExpanded = setExpandedFor(child.getClass());
+                if (setExpanded == NO_METHOD) continue;
+                try {
+                    setExpanded.invoke(child, true, !instant);
+                } catch (Throwable t) {
+                    ModLog.w("scroll", "AppBarLayout expand failed: {}", t);
+                }
+            }
+        }
+    }
+
+    private static Method setExpandedFor(Class<?> c) {
+        synchronized (SET_EXPANDED_BY_CLASS) {
+            Method m = SET_EXPANDED_BY_CLASS.get(c);
+            if (m != null) return m;
+        }
+        Method m = findMethod(c, "setExpanded", boolean.class, boolean.class);
+        if (m == null) m = NO_METHOD;
+        synchronized (SET_EXPANDED_BY_CLASS) {
+            SET_EXPANDED_BY_CLASS.put(c, m);
+        }
+        return m;
+    }
+
+    // ScrollView and NestedScrollView animate through an OverScroller (ScrollerCompat on old
+    // support libraries) in mScroller; a jump only sticks once that animation is aborted
+    private static void abortScroller(View v, Field scroller) {
+        if (scroller == null) return;
+        try {
+            Object s = scroller.get(v);
+            if (s instanceof android.widget.OverScroller) {
+                ((android.widget.OverScroller) s).abortAnimation();
+            } else if (s != null) {
+                XposedHelpers.callMethod(s, "abortAnimation");
+            }
+        } catch (Throwable t) {
+            ModLog.w("scroll", "couldn't abort scroll animation: {}", t);
+        }
+    }
+
+    // Runs action once, just before the next frame is drawn, unless another dispatch came in
+    // meanwhile. A jump only requests a layout: v.post() would run ahead of that traversal
+    // and animate from the old position, while pre-draw comes after its layout pass.
+    private static void afterNextLayout(final View v, final Runnable action) {
+        final int dispatch = sDispatch;
+        final ViewTreeObserver observer = v.getViewTreeObserver();
+        observer.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                // a window (re)attach merges the listeners into a new observer
+                (observer.isAlive() ? observer : v.getViewTreeObserver()).removeOnPreDrawListener(this);
+                if (dispatch == sDispatch) action.run();
+                return true;
+            }
+        });
+    }
+
+    private static Method findMethod(Class<?> c, String name, Class<?>... params) {
+        try {
+            return c.getMethod(name, params);
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    private static final ScrollStrategy GENERIC = (v, instant, screens) -> {
+        v.post(() -> {
+            try {
+                v.scrollTo(0, 0);
+            } catch (Throwable t) {
+                ModLog.w("scroll", "fallback scrollTo failed: {}", t);
+            }
+        });
+        return true;
+    };
+
+    private static final ScrollStrategy ABS_LIST_VIEW = (v, instant, screens) -> {
+        final android.widget.AbsListView list = (android.widget.AbsListView) v;
+        if (instant) {
+            list.setSelection(0);
+            return true;
+        }
+        // Far down a long list: jump to a few screens from the top, animate the rest
+        int jump = nearTopJumpPosition(list.getFirstVisiblePosition(), list.getChildCount(), screens);
+        if (jump > 0) {
+            list.setSelection(jump);
+            afterNextLayout(list, () -> list.smoothScrollToPositionFromTop(0, 0));
+            return true;
+        }
+        list.smoothScrollToPositionFromTop(0, 0);
+        return true;
+    };
+
+    private static final ScrollStrategy WEB_VIEW = new WebViewStrategy();
+
+    // androidx / support RecyclerView, bundled by the app
+    private static final class RecyclerViewStrategy implements ScrollStrategy {
+        private final Method scrollToPosition;
+        private final Method smoothScrollToPosition; // null on trimmed builds
+        private final Method childPosition;          // getChildAdapterPosition, or getChildPosition on old libraries
+        private final Method getLayoutManager;
+
+        // scrollToPositionWithOffset of the last LayoutManager class restored through; null if it has none
+        private Class<?> layoutManagerClass;
+        private Method scrollToPositionWithOffset;
+
+        RecyclerViewStrategy(Class<?> c) throws NoSuchMethodException {
+            scrollToPosition = c.getMethod("scrollToPosition", int.class);
+            getLayoutManager = findMethod(c, "getLayoutManager");
+            smoothScrollToPosition = findMethod(c, "smoothScrollToPosition", int.class);
+            Method pos = findMethod(c, "getChildAdapterPosition", View.class);
+            childPosition = pos != null ? pos : findMethod(c, "getChildPosition", View.class);
+        }
+
+        @Override
+        public boolean scrollToTop(final View v, boolean instant, int screens) throws Throwable {
+            if (instant || smoothScrollToPosition == null) {
+                scrollToPosition.invoke(v, 0);
+                return true;
+            }
+            // Far down a long feed: jump to a few screens from the top, animate the rest
+            int jump = nearTopJumpPosition(firstVisiblePosition((ViewGroup) v), ((ViewGroup) v).getChildCount(), screens);
+            if (jump > 0) {
+                scrollToPosition.invoke(v, jump);
+                afterNextLayout(v, () -> {
+                    try {
+                        smoothScrollToPosition.invoke(v, 0);
+                    } catch (Throwable t) {
+                        ModLog.w("scroll", "RecyclerView smooth scroll after jump failed: {}", t);
+                    }
+                });
+                return true;
+            }
+            smoothScrollToPosition.invoke(v, 0);
+            return true;
+        }
+
+        // Back to an adapter position with its top offset; without LinearLayoutManager's
+        // scrollToPositionWithOffset only the position comes back
+        void restore(View v, int position, int offset) throws Throwable {
+            Object lm = getLayoutManager != null ? getLayoutManager.invoke(v) : null;
+            if (lm != null) {
+                if (lm.getClass() != layoutManagerClass) {
+                    layoutManagerClass = lm.getClass();
+                    scrollToPositionWithOffset = findMethod(layoutManagerClass, "scrollToPositionWithOffset", int.class, int.class);
+                }
+                if (scrollToPositionWithOffset != null) {
+                    scrollToPositionWithOffset.invoke(lm, position, offset);
+                    return;
+                }
+            }
+            scrollToPosition.invoke(v, position);
+        }
+
+        // Adapter position of the first laid-out child
+        private int firstVisiblePosition(ViewGroup rv) {
+            if (childPosition == null || rv.getChildCount() == 0) return -1;
+            try {
+                Object pos = childPosition.invoke(rv, rv.getChildAt(0));
+                return pos instanceof Integer ? (Integer) pos : -1;
+            } catch (Throwable t) {
+                return -1;
+            }
+        }
+    }
+
+    private static final class ScrollViewStrategy implements ScrollStrategy {
+        private final Field scroller; // null if the field isn't there
+
+        ScrollViewStrategy(Class<?> c) {
+            scroller = XposedHelpers.findFieldIfExists(c, "mScroller");
+        }
+
+        @Override
+        public boolean scrollToTop(View v, final boolean instant, int screens) {
+            final android.widget.ScrollView sv = (android.widget.ScrollView) v;
+            final int dispatch = sDispatch;
+            sv.post(() -> {
+                if (instant) {
+                    abortScroller(sv, scroller);
+                    sv.scrollTo(0, 0);
+                } else if (dispatch == sDispatch) {
+                    sv.smoothScrollTo(0, 0);
+                }
+            });
+            return true;
+        }
+    }
+
+    // androidx / support NestedScrollView
+    private static final class NestedScrollViewStrategy implements ScrollStrategy {
+        private final Method smoothScrollTo; // null if the class doesn't expose it
+        private final Field scroller;
+
+        NestedScrollViewStrategy(Class<?> c) {
+            smoothScrollTo = findMethod(c, "smoothScrollTo", int.class, int.class);
+            scroller = XposedHelpers.findFieldIfExists(c, "mScroller");
+        }
+
+        @Override
+        public boolean scrollToTop(View v, boolean instant, int screens) throws Throwable {
+            if (instant || smoothScrollTo == null) {
+                abortScroller(v, scroller);
+                v.scrollTo(0, 0);
+            } else {
+                smoothScrollTo.invoke(v, 0, 0);
+            }
+            return true;
+        }
+    }
+
+    // WebView: the document's own scroll offset first, natively and without script. Only a
+    // page whose content scrolls inside an element (app shells, SPAs) needs JS; that script is
+    // built once, finds the dominant scroll container the first time it runs on a page and keeps
+    // it in a page global, so later taps go straight to it. What it found comes back through the
+    // callback and is kept per WebView and URL: a page with no container doesn't run script again.
+    private static final class WebViewStrategy implements ScrollStrategy {
+        private static final int PAGE_UNKNOWN = 0;
+        private static final int PAGE_CONTAINER = 1; // an inner element scrolls; the script keeps it
+        private static final int PAGE_DOCUMENT = 2;  // only the document scrolls
+
+        private static final String SCRIPT_SMOOTH = script("smooth");
+        private static final String SCRIPT_INSTANT = script("auto");
+
+        private final Map<android.webkit.WebView, Page> pages = new WeakHashMap<>();
+
+        // ES5 only: old system WebViews run it too. Largest visible element with its own
+        // vertical overflow; document.documentElement.contains() drops one a re-render replaced.
+        private static String script(String behavior) {
+            return "(function(){"
+                    + "var w=window.__statusBarScroller;"
+                    + "if(!w||!document.documentElement.contains(w)){"
+                    + "w=null;var best=0,all=document.body?document.body.getElementsByTagName('*'):[];"
+                    + "for(var i=0;i<all.length;i++){var e=all[i];"
+                    + "if(e.scrollHeight-e.clientHeight<2)continue;"
+                    + "var o=getComputedStyle(e).overflowY;if(o!=='auto'&&o!=='scroll'&&o!=='overlay')continue;"
+                    + "var r=e.getBoundingClientRect();"
+                    + "var a=Math.max(0,Math.min(r.right,innerWidth)-Math.max(r.left,0))"
+                    + "*Math.max(0,Math.min(r.bottom,innerHeight)-Math.max(r.top,0));"
+                    + "if(a>best){best=a;w=e;}}"
+                    + "window.__statusBarScroller=w;}"
+                    + "if(!w)return 'document';"
+                    + "try{w.scrollTo({top:0,behavior:'" + behavior + "'});}catch(x){w.scrollTop=0;}"
+                    + "return 'container';})()";
+        }
+
+        @Override
+        public boolean scrollToTop(View v, boolean instant, int screens) {
+            android.webkit.WebView wv = (android.webkit.WebView) v;
+            if (wv.getScrollY() > 0) {
+                // pageUp(true) animates to the top; false if it couldn't move
+                if (instant || !wv.pageUp(true)) wv.scrollTo(wv.getScrollX(), 0);
+                return true;
+            }
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) return false; // no evaluateJavascript
+            Page page = pageOf(wv);
+            if (page.state == PAGE_DOCUMENT) return true; // already at the top, nothing inside scrolls
+            wv.evaluateJavascript(instant ? SCRIPT_INSTANT : SCRIPT_SMOOTH, page);
+            return true;
+        }
+
+        private Page pageOf(android.webkit.WebView wv) {
+            String url = wv.getUrl();
+            Page page = pages.get(wv);
+            if (page == null) {
+                page = new Page();
+                pages.put(wv, page);
+            }
+            if (url == null ? page.url != null : !url.equals(page.url)) {
+                page.url = url;
+                page.state = PAGE_UNKNOWN;
+            }
+            return page;
+        }
+
+        // What the script reported for one WebView's current page. Main thread.
+        private static final class Page implements android.webkit.ValueCallback<String> {
+            String url;
+            int state;
+
+            @Override
+            public void onReceiveValue(String value) {
+                // the result arrives JSON-encoded, quotes included
+                if (value == null) return;
+                if (value.contains("container")) state = PAGE_CONTAINER;
+                else if (value.contains("document")) state = PAGE_DOCUMENT;
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.yourdomain.statusbarscroll;
+
+import android.view.View;
+
+// One way of moving a scroller back to its top, bound to a concrete view class.
+// Implementations look up any reflective handles when they are created, so a tap costs
+// one call on an already-resolved Method.
+interface ScrollStrategy {
+
+    // Called on the view's UI thread. Returns false if the view couldn't be moved,
+    // so the caller can fall back to a plain scrollTo.
+    boolean scrollToTop(View v, boolean instant, int fastScrollScreens) throws Throwable;
+}
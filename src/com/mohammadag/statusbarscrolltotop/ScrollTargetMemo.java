@@ -0,0 +1,209 @@
+package com.yourdomain.statusbarscroll;
+
+import android.os.Build;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+// Remembers the last search result for each root view, so repeated taps on a screen that
+// hasn't changed skip the tree walk. Both roots and targets are held weakly, with the target's
+// visibility score. An entry is dropped when the root's tree lays out, the window
+// attaches/detaches, or the target itself is detached. A scroll anywhere in the tree only
+// marks it: the listener can't tell who scrolled, and most scrolls are the target's own (the
+// scroll to the top, or the user reading), which don't change the answer. The next lookup
+// re-measures the target's visible area instead and drops the entry if it changed, e.g. a
+// pager swipe moved the page away. "No scrollable in this root" is remembered too, and is
+// dropped by any scroll, which may have brought one into view.
+// Main thread only, like the ViewTreeObserver callbacks that invalidate it.
+final class ScrollTargetMemo {
+
+    static final int LOOKUP_MISS = 0;   // no valid memo, search this root
+    static final int LOOKUP_NONE = 1;   // this root had no scrollable last time
+    static final int LOOKUP_TARGET = 2; // getTarget() holds the last target
+
+    private final Map<View, Entry> entries = new WeakHashMap<>();
+
+    private View target;
+    private long targetScore;
+    private int hits;
+    private int misses;
+
+    int lookup(View root) {
+        target = null;
+        Entry e = entries.get(root);
+        if (e == null || !e.valid || e.observer != root.getViewTreeObserver()) {
+            misses++;
+            return LOOKUP_MISS;
+        }
+        if (e.scrolled && !e.hasTarget) {
+            e.invalidate();
+            misses++;
+            return LOOKUP_MISS;
+        }
+        if (e.hasTarget) {
+            View t = e.target.get();
+            if (t == null || (e.scrolled && ViewTreeAdapter.INSTANCE.visibleArea(t) != e.area)) {
+                e.invalidate();
+                misses++;
+                return LOOKUP_MISS;
+            }
+            e.scrolled = false;
+            target = t;
+            targetScore = e.score;
+            hits++;
+            return LOOKUP_TARGET;
+        }
+        hits++;
+        return LOOKUP_NONE;
+    }
+
+    // Target found by the last LOOKUP_TARGET; not retained past the tap
+    View getTarget() {
+        View t = target;
+        target = null;
+        return t;
+    }
+
+    // Score of the target returned by the last LOOKUP_TARGET
+    long getTargetScore() {
+        return targetScore;
+    }
+
+    // Called when root is captured for a search; starts watching it and returns the generation
+    // to pass to remember(), or -1 if the root can't be watched
+    int prepare(View root) {
+        Entry e = entries.get(root);
+        ViewTreeObserver observer = root.getViewTreeObserver();
+        if (e != null && e.observer != observer) {
+            e.release();
+            e = null;
+        }
+        if (e == null) {
+            if (observer == null || !observer.isAlive()) return -1;
+            e = new Entry(root, observer);
+            entries.put(root, e);
+        }
+        return e.generation;
+    }
+
+    // Records a completed (not truncated) search of root; target may be null. Dropped if the
+    // root laid out, scrolled or detached since prepare(), as the result may describe a stale tree.
+    void remember(View root, int generation, View target, long score) {
+        if (generation < 0) return;
+        Entry e = entries.get(root);
+        if (e == null || e.generation != generation || e.observer != root.getViewTreeObserver()) return;
+        e.setTarget(target, score);
+    }
+
+    int getHits() {
+        return hits;
+    }
+
+    int getMisses() {
+        return misses;
+    }
+
+    // Percentage of lookups answered from the memo
+    int getHitRate() {
+        int total = hits + misses;
+        return total == 0 ? 0 : (int) (100L * hits / total);
+    }
+
+    private final class Entry implements ViewTreeObserver.OnGlobalLayoutListener,
+            ViewTreeObserver.OnScrollChangedListener, ViewTreeObserver.OnWindowAttachListener,
+            View.OnAttachStateChangeListener {
+
+        private final WeakReference<View> root;
+        private final ViewTreeObserver observer;
+        private WeakReference<View> target;
+        private long score;
+        private long area;        // the target's visible area when it was remembered
+        private boolean scrolled; // something in the tree scrolled since
+        private int generation;   // bumped on every invalidation
+        private boolean hasTarget;
+        private boolean valid;
+
+        Entry(View root, ViewTreeObserver observer) {
+            this.root = new WeakReference<>(root);
+            this.observer = observer;
+            observer.addOnGlobalLayoutListener(this);
+            observer.addOnScrollChangedListener(this);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+                observer.addOnWindowAttachListener(this);
+            }
+        }
+
+        void setTarget(View t, long score) {
+            View old = target != null ? target.get() : null;
+            if (old != t) {
+                if (old != null) old.removeOnAttachStateChangeListener(this);
+                if (t != null) t.addOnAttachStateChangeListener(this);
+                target = t != null ? new WeakReference<>(t) : null;
+            }
+            hasTarget = t != null;
+            this.score = score;
+            area = t != null ? ViewTreeAdapter.INSTANCE.visibleArea(t) : 0;
+            scrolled = false;
+            valid = true;
+        }
+
+        void invalidate() {
+            valid = false;
+            generation++;
+        }
+
+        void release() {
+            invalidate();
+            View t = target != null ? target.get() : null;
+            if (t != null) t.removeOnAttachStateChangeListener(this);
+            target = null;
+            if (observer.isAlive()) {
+                observer.removeOnGlobalLayoutListener(this);
+                observer.removeOnScrollChangedListener(this);
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+                    observer.removeOnWindowAttachListener(this);
+                }
+            }
+            View r = root.get();
+            if (r != null && entries.get(r) == this) entries.remove(r);
+        }
+
+        @Override
+        public void onGlobalLayout() {
+            invalidate();
+        }
+
+        // A search still in flight may have captured the tree before the scroll: drop its result
+        @Override
+        public void onScrollChanged() {
+            if (valid) {
+                scrolled = true;
+            } else {
+                invalidate();
+            }
+        }
+
+        @Override
+        public void onWindowAttached() {
+            invalidate();
+        }
+
+        @Override
+        public void onWindowDetached() {
+            release();
+        }
+
+        @Override
+        public void onViewAttachedToWindow(View v) {
+            invalidate();
+        }
+
+        @Override
+        public void onViewDetachedFromWindow(View v) {
+            invalidate();
+        }
+    }
+}
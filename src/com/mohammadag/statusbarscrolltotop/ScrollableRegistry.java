@@ -0,0 +1,122 @@
+package com.yourdomain.statusbarscroll;
+
+import android.os.SystemClock;
+import android.view.View;
+
+import com.yourdomain.statusbarscroll.core.TreeScoring;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+
+// One scroll-to-top endpoint per app process, backed by a weak list of the scrollers created
+// in it. Replaces the receiver-per-view scheme: nothing is registered or unregistered on
+// Activity transitions, and views that go away are purged instead of leaking through the list.
+// Only the best visible view of the focused window reacts, which is what pausing the receivers
+// used to achieve; off-screen pages of a tabbed UI score 0 and are left alone. When SystemUI
+// says where the tap was, the window under it is used instead of the focused one, so in split
+// screen only the app below the tap scrolls, focused or not. A tap while the last smooth
+// scroll here is still running escalates it to a jump, as ScrollRequestScheduler does in SystemUI.
+// Commands arrive from SystemUI through ScrollChannelClient.
+final class ScrollableRegistry {
+
+    // Purge cleared references every this many registrations
+    private static final int PURGE_INTERVAL = 32;
+
+    private static final ArrayList<WeakReference<View>> sViews = new ArrayList<>();
+    private static int sAddsSincePurge;
+    private static final int[] sLocation = new int[2];
+
+    // Target of the last smooth scroll and when it started; main thread only
+    private static WeakReference<View> sAnimating;
+    private static long sAnimatingSince;
+
+    private ScrollableRegistry() { }
+
+    static void register(View view) {
+        synchronized (sViews) {
+            // chained constructors each report the same view, back to back
+            int last = sViews.size() - 1;
+            if (last >= 0 && sViews.get(last).get() == view) return;
+            if (++sAddsSincePurge >= PURGE_INTERVAL) {
+                purgeLocked();
+                sAddsSincePurge = 0;
+            }
+            sViews.add(new WeakReference<>(view));
+        }
+        ScrollChannelClient.start(view.getContext());
+    }
+
+    // Scrolls the best visible scroller of the window under tapX on displayId (the focused
+    // window if tapX is UNKNOWN), scored like the SystemUI search. Main thread.
+    static void dispatchScrollToTop(int displayId, int tapX) {
+        long now = SystemClock.uptimeMillis();
+        View animating = sAnimating != null ? sAnimating.get() : null;
+        sAnimating = null;
+        if (ScrollRequestScheduler.isAnimating(animating, sAnimatingSince, now)) {
+            ModLog.d("registry", "tap during animation, jumping {} to the top", animating.getClass());
+            try {
+                ScrollStrategies.jumpToTop(animating);
+            } catch (Throwable t) {
+                ModLog.w("registry", "registry jump failed: {}", t);
+            }
+            return;
+        }
+        // tapped again soon after the last scroll here: back to where it was
+        if (ScrollStrategies.restoreLast()) return;
+        View best = null;
+        long bestScore = 0;
+        ViewTreeAdapter geometry = ViewTreeAdapter.INSTANCE;
+        synchronized (sViews) {
+            for (int i = sViews.size() - 1; i >= 0; i--) {
+                View view = sViews.get(i).get();
+                if (view == null) {
+                    sViews.remove(i);
+                    continue;
+                }
+                try {
+                    if (!view.isShown() || !isInTappedWindow(view, displayId, tapX))
+                        continue;
+                    long score = TreeScoring.score(geometry.visibleArea(view), geometry.hasFocus(view), geometry.isRaised(view),
+                            geometry.isHorizontalOnly(view));
+                    // newest registration wins ties, as it is usually on top
+                    if (score > bestScore) {
+                        best = view;
+                        bestScore = score;
+                    }
+                } catch (Throwable t) {
+                    ModLog.w("registry", "registry scoring failed: {}", t);
+                }
+            }
+        }
+        if (best == null) return;
+        try {
+            // same strategies as SystemUI's own windows: fast jump, WebView pages, app bars
+            ModuleConfig config = ModuleConfig.get();
+            boolean instant = config.animationMode == ModuleConfig.ANIMATION_INSTANT;
+            ScrollStrategies.scrollToTop(best, instant, config.fastScrollScreens);
+            if (!instant) {
+                sAnimating = new WeakReference<>(best);
+                sAnimatingSince = now;
+            }
+        } catch (Throwable t) {
+            ModLog.w("registry", "registry scroll failed: {}", t);
+        }
+    }
+
+    private static boolean isInTappedWindow(View view, int displayId, int tapX) {
+        if (displayId != RootViewResolver.UNKNOWN) {
+            int d = RootViewResolver.displayIdOf(view);
+            if (d != RootViewResolver.UNKNOWN && d != displayId) return false;
+        }
+        if (tapX == RootViewResolver.UNKNOWN) return view.hasWindowFocus();
+        View root = view.getRootView();
+        root.getLocationOnScreen(sLocation);
+        return tapX >= sLocation[0] && tapX < sLocation[0] + root.getWidth();
+    }
+
+    private static void purgeLocked() {
+        for (int i = sViews.size() - 1; i >= 0; i--) {
+            if (sViews.get(i).get() == null) sViews.remove(i);
+        }
+    }
+}
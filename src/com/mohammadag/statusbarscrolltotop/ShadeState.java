@@ -0,0 +1,68 @@
+package com.yourdomain.statusbarscroll;
+
+import de.robv.android.xposed.XposedHelpers;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+// How far the notification shade is pulled down, read from the status bar's panel. A tap
+// trigger uses it to ignore touches that are really the start of a shade drag. The panel
+// field and its getExpandedFraction() are resolved on first use and kept; the panel object
+// itself is read each time, since SystemUI may recreate it.
+final class ShadeState {
+
+    // mNotificationPanel: NotificationPanelView up to Q; the view controller from R on
+    private static final String[] PANEL_FIELDS = new String[]{
+            "mNotificationPanel",
+            "mNotificationPanelViewController"
+    };
+
+    private final Object statusBar;
+
+    private boolean resolved;
+    private Field panelField;
+    private Method expandedFraction;
+
+    ShadeState(Object statusBar) {
+        this.statusBar = statusBar;
+    }
+
+    // 0 when the shade is closed, or when it can't be read
+    float expandedFraction() {
+        if (!resolved) resolve();
+        if (expandedFraction == null) return 0f;
+        try {
+            Object panel = panelField.get(statusBar);
+            if (panel == null) return 0f;
+            Object f = expandedFraction.invoke(panel);
+            return f instanceof Float ? (Float) f : 0f;
+        } catch (Throwable t) {
+            return 0f;
+        }
+    }
+
+    boolean isOpenOrOpening() {
+        return expandedFraction() > 0f;
+    }
+
+    private void resolve() {
+        resolved = true;
+        if (statusBar == null) return;
+        for (String name : PANEL_FIELDS) {
+            Field f = XposedHelpers.findFieldIfExists(statusBar.getClass(), name);
+            if (f == null) continue;
+            try {
+                Object panel = f.get(statusBar);
+                Class<?> c = panel != null ? panel.getClass() : f.getType();
+                Method m = XposedHelpers.findMethodExactIfExists(c, "getExpandedFraction");
+                if (m != null) {
+                    panelField = f;
+                    expandedFraction = m;
+                    ModLog.i("hook", "shade state from {}.getExpandedFraction()", name);
+                    return;
+                }
+            } catch (Throwable ignored) { }
+        }
+        ModLog.w("hook", "no getExpandedFraction on the status bar panel; shade drags only filtered by slop");
+    }
+}
@@ -0,0 +1,178 @@
+package com.yourdomain.statusbarscroll;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.view.View;
+
+import com.yourdomain.statusbarscroll.core.TreeSnapshot;
+
+import java.util.Arrays;
+
+// Picks the scroll target for a tap without doing the search work on the main thread.
+// The main thread only copies the hierarchies it has no memo for into a TreeSnapshot;
+// clipping and scoring run on a worker thread, and the winner comes back to the main
+// thread through the callback, where the scroll itself is issued.
+// One selection is in flight at a time; the snapshot and both hops are reused, so a
+// warm tap allocates nothing.
+final class TargetSelector {
+
+    // Main thread. target is null if no window holds a visible scrollable.
+    interface Callback {
+        void onSelected(View target, long score, long startNanos);
+    }
+
+    private final TreeSnapshot<View> snapshot = new TreeSnapshot<>(ViewTreeAdapter.INSTANCE);
+    private final ScrollTargetMemo memo;
+    private final ScrollMetrics metrics;
+    private final Handler main;
+    private final Callback callback;
+    private final TraceRecorder trace;
+    private Handler worker;
+
+    private final int[] location = new int[2];
+    private int[] generations = new int[8]; // memo generation of each captured root
+
+    // Current selection; only touched on the main thread, except scored (set by the worker
+    // before it posts back)
+    private boolean busy;
+    private long startNanos;
+    private View known;
+    private long knownScore;
+    private boolean scored;
+    private long captureNanos; // main-thread copy time, for the trace
+    private long scoreNanos;   // worker scoring time, for the trace
+
+    private final Runnable scoreOnWorker = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                long start = System.nanoTime();
+                snapshot.score();
+                scoreNanos = System.nanoTime() - start;
+                scored = true;
+            } catch (Throwable t) {
+                ModLog.e("search", "snapshot scoring failed: {}", t);
+                scored = false;
+            }
+            main.post(completeOnMain);
+        }
+    };
+
+    private final Runnable completeOnMain = new Runnable() {
+        @Override
+        public void run() {
+            complete();
+        }
+    };
+
+    TargetSelector(ScrollTargetMemo memo, ScrollMetrics metrics, Handler main, TraceRecorder trace, Callback callback) {
+        this.memo = memo;
+        this.metrics = metrics;
+        this.main = main;
+        this.trace = trace;
+        this.callback = callback;
+    }
+
+    // Starts the worker thread ahead of the first selection
+    void prestart() {
+        worker();
+    }
+
+    boolean isBusy() {
+        return busy;
+    }
+
+    // Starts a selection for a tap handled since startNanos
+    void begin(long startNanos) {
+        ModuleConfig config = ModuleConfig.get();
+        snapshot.setNodeBudget(config.nodeBudget);
+        snapshot.setTimeBudgetNanos(config.timeBudgetNanos);
+        snapshot.reset();
+        this.startNanos = startNanos;
+        known = null;
+        knownScore = 0;
+        captureNanos = 0;
+    }
+
+    // A target already known for one root (memo hit), competing with whatever the snapshot finds
+    void offer(View target, long score) {
+        if (target != null && score >= knownScore) {
+            known = target;
+            knownScore = score;
+        }
+    }
+
+    // Copies a root the memo couldn't answer for into the snapshot
+    void capture(View root) {
+        long start = System.nanoTime();
+        root.getLocationOnScreen(location);
+        int r = snapshot.capture(root, location[0], location[1], root.hasWindowFocus());
+        if (r == generations.length) generations = Arrays.copyOf(generations, r * 2);
+        generations[r] = memo.prepare(root);
+        captureNanos += System.nanoTime() - start;
+    }
+
+    // Hands the snapshot to the worker, or answers right away if every root came from the memo
+    void finish() {
+        if (snapshot.getRootCount() == 0) {
+            deliver(known, knownScore);
+            return;
+        }
+        busy = true;
+        scored = false;
+        worker().post(scoreOnWorker);
+    }
+
+    private void complete() {
+        View best = known;
+        long bestScore = knownScore;
+        try {
+            metrics.recordNodesVisited(snapshot.size());
+            if (scored) {
+                // before any result is consumed, so the trace holds what the worker decided
+                trace.recordSelection(SystemClock.uptimeMillis(), captureNanos, scoreNanos, knownScore, snapshot);
+                for (int r = 0, n = snapshot.getRootCount(); r < n; r++) {
+                    if (snapshot.isRootTruncated(r)) {
+                        ModLog.i("search", "snapshot budget exhausted after {} nodes", snapshot.size());
+                        metrics.recordOutcome(ScrollMetrics.OUTCOME_TRUNCATED);
+                        continue;
+                    }
+                    int s = snapshot.getRootBest(r);
+                    memo.remember(snapshot.rootAt(r), generations[r],
+                            s >= 0 ? snapshot.candidateAt(s) : null, snapshot.getRootBestScore(r));
+                }
+                int s = snapshot.getBest();
+                if (s >= 0 && snapshot.getBestScore() >= bestScore) {
+                    best = snapshot.candidateAt(s);
+                    bestScore = snapshot.getBestScore();
+                }
+            } else {
+                metrics.recordOutcome(ScrollMetrics.OUTCOME_ERROR);
+            }
+        } catch (Throwable t) {
+            ModLog.w("search", "error completing selection: {}", t);
+        } finally {
+            snapshot.clearRefs();
+            busy = false;
+        }
+        // the tree may have changed while the worker scored it
+        if (best != null && !best.isShown()) best = null;
+        deliver(best, bestScore);
+    }
+
+    private void deliver(View target, long score) {
+        known = null;
+        callback.onSelected(target, score, startNanos);
+    }
+
+    private Handler worker() {
+        if (worker == null) {
+            HandlerThread thread = new HandlerThread("StatusBarScroll-select", Process.THREAD_PRIORITY_FOREGROUND);
+            thread.start();
+            worker = new Handler(thread.getLooper());
+        }
+        return worker;
+    }
+}
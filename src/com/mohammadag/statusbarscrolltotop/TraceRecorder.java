@@ -0,0 +1,154 @@
+package com.yourdomain.statusbarscroll;
+
+import android.content.pm.ApplicationInfo;
+import android.os.Build;
+
+import com.yourdomain.statusbarscroll.core.TapDetector;
+import com.yourdomain.statusbarscroll.core.TraceFormat;
+import com.yourdomain.statusbarscroll.core.TreeSnapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Opt-in (trace_enabled) recorder of the touches the status bar saw and the snapshots the
+// selector scored, in TraceFormat, for TraceReplay on a desktop JVM. Main thread only.
+// Writes go to a buffer that is flushed after each selection. Every session (each time
+// recording starts, and again once a file passes MAX_BYTES) gets a file of its own in
+// SystemUI's cache dir, named by its start time, with its own header and CONFIG: a session
+// cut off mid-record by a SystemUI crash only loses its own tail, never a later session.
+// Only the newest MAX_FILES are kept. After an IO error the recorder stays off until
+// SystemUI restarts, rather than retrying on every touch.
+final class TraceRecorder {
+
+    private static final String FILE_PREFIX = "statusbar_scroll_trace-";
+    private static final String FILE_SUFFIX = ".bin";
+    private static final long MAX_BYTES = 2 * 1024 * 1024;
+    private static final int MAX_FILES = 4;
+
+    private final File dir;
+    private File file; // the current session's
+    private DataOutputStream out;
+    private boolean failed;
+    private TapDetector detector; // repeated at the start of every session and rotated file
+
+    private TraceRecorder(File dir) {
+        this.dir = dir;
+    }
+
+    // Never returns null; without a data dir nothing is ever recorded
+    static TraceRecorder create(ApplicationInfo appInfo) {
+        File dir = null;
+        if (appInfo != null && appInfo.dataDir != null) dir = new File(appInfo.dataDir, "cache");
+        return new TraceRecorder(dir);
+    }
+
+    // The detector was (re)built; later touches are replayed against these parameters
+    void recordConfig(TapDetector detector) {
+        this.detector = detector;
+        boolean wasOpen = out != null;
+        DataOutputStream o = stream();
+        if (o == null || !wasOpen) return; // opening the stream already wrote it
+        try {
+            TraceFormat.writeConfig(o, detector);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    void recordTouch(int action, float x, float y, long eventTime, boolean fired) {
+        DataOutputStream o = stream();
+        if (o == null) return;
+        try {
+            TraceFormat.writeTouch(o, action, x, y, eventTime, fired);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    void recordLongPress(long uptime, boolean fired) {
+        DataOutputStream o = stream();
+        if (o == null) return;
+        try {
+            TraceFormat.writeLongPress(o, uptime, fired);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    // Call with a scored snapshot whose results haven't been consumed yet
+    void recordSelection(long uptime, long captureNanos, long scoreNanos, long knownScore, TreeSnapshot<?> snapshot) {
+        DataOutputStream o = stream();
+        if (o == null) return;
+        try {
+            TraceFormat.writeSelection(o, uptime, captureNanos, scoreNanos, knownScore, snapshot);
+            o.flush();
+            if (file.length() >= MAX_BYTES) rotate();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    // Open stream while tracing is enabled; closed again as soon as it is switched off
+    private DataOutputStream stream() {
+        if (!ModuleConfig.get().traceEnabled) {
+            if (out != null) close();
+            return null;
+        }
+        if (out == null && !failed && dir != null) open();
+        return out;
+    }
+
+    private void open() {
+        try {
+            if (!dir.exists()) dir.mkdirs();
+            long now = System.currentTimeMillis();
+            File f = new File(dir, FILE_PREFIX + now + FILE_SUFFIX);
+            while (f.exists()) f = new File(dir, FILE_PREFIX + ++now + FILE_SUFFIX);
+            DataOutputStream o = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)));
+            TraceFormat.writeHeader(o, Build.FINGERPRINT, now);
+            if (detector != null) TraceFormat.writeConfig(o, detector);
+            out = o;
+            file = f;
+            ModLog.i("trace", "recording to {}", f);
+            deleteOldSessions();
+        } catch (Throwable t) {
+            fail(t);
+        }
+    }
+
+    private void rotate() {
+        close();
+        open();
+    }
+
+    // Names hold the start time with a fixed number of digits, so they sort by age
+    private void deleteOldSessions() {
+        String[] names = dir.list();
+        if (names == null) return;
+        Arrays.sort(names);
+        int sessions = 0;
+        for (int i = names.length - 1; i >= 0; i--) {
+            String name = names[i];
+            if (!name.startsWith(FILE_PREFIX) || !name.endsWith(FILE_SUFFIX)) continue;
+            if (++sessions > MAX_FILES) new File(dir, name).delete();
+        }
+    }
+
+    private void close() {
+        try {
+            out.close();
+        } catch (IOException ignored) {
+        }
+        out = null;
+    }
+
+    private void fail(Throwable t) {
+        ModLog.w("trace", "trace recording stopped: {}", t);
+        failed = true;
+        if (out != null) close();
+    }
+}
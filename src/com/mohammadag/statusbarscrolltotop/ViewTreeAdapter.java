@@ -0,0 +1,101 @@
+package com.yourdomain.statusbarscroll;
+
+import android.graphics.Rect;
+import android.os.Build;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+
+import com.yourdomain.statusbarscroll.core.SnapshotAdapter;
+
+// Exposes the live view hierarchy to the core tree search and snapshot.
+// Main thread only: visibility queries share one Rect, so scoring candidates allocates nothing.
+final class ViewTreeAdapter implements SnapshotAdapter<View> {
+
+    static final ViewTreeAdapter INSTANCE = new ViewTreeAdapter();
+
+    private final Rect visible = new Rect();
+
+    private ViewTreeAdapter() { }
+
+    @Override
+    public int childCount(View node) {
+        return node instanceof ViewGroup ? ((ViewGroup) node).getChildCount() : 0;
+    }
+
+    @Override
+    public View childAt(View node, int index) {
+        return ((ViewGroup) node).getChildAt(index);
+    }
+
+    @Override
+    public boolean isWorthVisiting(View v) {
+        return v.getVisibility() == View.VISIBLE && v.getWidth() > 0 && v.getHeight() > 0;
+    }
+
+    // Child bounds are in the parent's content coordinates; compare against its scrolled viewport
+    @Override
+    public boolean isInsideParent(View parent, View child) {
+        int left = parent.getScrollX();
+        int top = parent.getScrollY();
+        return child.getRight() > left && child.getLeft() < left + parent.getWidth()
+                && child.getBottom() > top && child.getTop() < top + parent.getHeight();
+    }
+
+    @Override
+    public int scrollKind(View node) {
+        return ScrollKinds.kindOf(node);
+    }
+
+    // Not part of the snapshot: the app-side registry and the target memo score live views.
+    // Pixels of the view visible on screen, clipped by every ancestor and the window, so an
+    // off-screen pager page scores 0
+    long visibleArea(View v) {
+        if (!v.getGlobalVisibleRect(visible)) return 0;
+        return (long) visible.width() * visible.height();
+    }
+
+    // True if the view's window has input focus or the view contains the focused view
+    boolean hasFocus(View v) {
+        return v.hasWindowFocus() || v.hasFocus();
+    }
+
+    // True if the view or an ancestor has elevation, e.g. a sheet or dialog surface
+    boolean isRaised(View v) {
+        while (!hasElevation(v)) {
+            ViewParent p = v.getParent();
+            if (!(p instanceof View)) return false;
+            v = (View) p;
+        }
+        return true;
+    }
+
+    // Translation included: pager and sheet animations move views without a layout
+    @Override
+    public void readGeometry(View v, int[] out, int offset) {
+        int dx = (int) v.getTranslationX();
+        int dy = (int) v.getTranslationY();
+        out[offset] = v.getLeft() + dx;
+        out[offset + 1] = v.getTop() + dy;
+        out[offset + 2] = v.getRight() + dx;
+        out[offset + 3] = v.getBottom() + dy;
+        out[offset + 4] = v.getScrollX();
+        out[offset + 5] = v.getScrollY();
+    }
+
+    @Override
+    public boolean isFocusedNode(View v) {
+        return v.isFocused();
+    }
+
+    @Override
+    public boolean isHorizontalOnly(View v) {
+        return ScrollStrategies.isHorizontalOnly(v);
+    }
+
+    // Elevation only exists from Lollipop on; before that nothing is raised
+    @Override
+    public boolean hasElevation(View v) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP && v.getZ() > 0;
+    }
+}
@@ -1,13 +1,16 @@
 package com.yourdomain.statusbarscroll; // <-- change to your module package
 
 import android.content.Context;
-import android.content.SharedPreferences;
+import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
-import android.view.GestureDetector;
+import android.os.SystemClock;
 import android.view.MotionEvent;
 import android.view.View;
-import android.view.ViewGroup;
+import android.view.ViewConfiguration;
+
+import com.yourdomain.statusbarscroll.core.TapDetector;
+import com.yourdomain.statusbarscroll.core.TreeSnapshot;
 
 import de.robv.android.xposed.IXposedHookLoadPackage;
 import de.robv.android.xposed.XC_MethodHook;
@@ -15,16 +18,12 @@ import de.robv.android.xposed.XposedBridge;
 import de.robv.android.xposed.XposedHelpers;
 import de.robv.android.xposed.callbacks.XC_LoadPackage;
 
-import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.PrintWriter;
+import java.lang.reflect.Field;
+import java.util.Arrays;
 
 public class XposedMod implements IXposedHookLoadPackage {
 
-    // Preference key for enabling/disabling module
-    private static final String PREFS_NAME = "statusbar_scroll_prefs";
-    private static final String PREF_ENABLE_KEY = "enable_scroll_to_top";
-
     // Candidate SystemUI classes; add more if your ROM uses different names
     private static final String[] CANDIDATE_STATUSBAR_CLASSES = new String[]{
             "com.android.systemui.statusbar.StatusBar",
@@ -34,66 +33,165 @@ public class XposedMod implements IXposedHookLoadPackage {
             "com.android.systemui.statusbar.phone.StatusBar" // extra candidate
     };
 
+    private static final String[] LIFECYCLE_CANDIDATES = new String[]{"onAttachedToWindow", "onFinishInflate", "onCreate", "onLayout"};
+
+    private static final String DUMP_JSON_ARG = "statusbarscroll-json";
+    private static final String DUMP_CHANNEL_TEST_ARG = "statusbarscroll-channel-test";
+
+    private static final String[] FIELD_CANDIDATES = new String[]{"mStatusBarView", "mStatusBarWindow", "mStatusBar", "mView", "mRootView"};
+
+    // Cache of the class/lifecycle/field that worked on the last boot of this ROM build
+    private HookResolutionCache hookCache;
+
+    // WindowManagerGlobal root-view accessor, resolved on the first tap
+    private RootViewResolver rootViewResolver;
+
+    // Last search result per root, invalidated by layout/scroll/attach callbacks
+    private final ScrollTargetMemo targetMemo = new ScrollTargetMemo();
+
+    // Snapshots roots on the main thread and scores them on a worker; created with the first tap
+    private TargetSelector targetSelector;
+
+    // Direct channel to the foreground app's process, started with the gesture
+    private ScrollChannelHost scrollChannel;
+
+    // Allocated with the first gesture install and shared by every tap
+    private Handler mainHandler;
+    private Runnable scrollRunnable;
+    private ScrollRequestScheduler scheduler;
+    private int gestureInstalls;
+
+    // Tap-to-scroll latency, traversal and outcome counters, shown in the SystemUI dump
+    private final ScrollMetrics metrics = new ScrollMetrics();
+
+    // Touch and snapshot trace for TraceReplay; records only while trace_enabled is set
+    private TraceRecorder traceRecorder;
+
     @Override
     public void handleLoadPackage(final XC_LoadPackage.LoadPackageParam lpparam) throws Throwable {
         try {
-            if (!"com.android.systemui".equals(lpparam.packageName)) return;
+            if (!"com.android.systemui".equals(lpparam.packageName)) {
+                AppHooks.installIfAllowed(lpparam);
+                return;
+            }
 
-            XposedBridge.log("[StatusBarScroll] hooking SystemUI");
+            ModLog.i("hook", "hooking SystemUI");
             final ClassLoader cl = lpparam.classLoader;
 
+            hookCache = HookResolutionCache.load(lpparam.appInfo, Build.FINGERPRINT);
+            traceRecorder = TraceRecorder.create(lpparam.appInfo);
+            installDumpHook(cl);
+
+            // Fast path: hook what worked last time on this build without probing
+            if (hookCache.hasResolution()) {
+                Class<?> cachedClass = XposedHelpers.findClassIfExists(hookCache.getClassName(), cl);
+                if (cachedClass != null && hookLifecycle(cachedClass, hookCache.getLifecycle(), cl)) {
+                    hookCache.recordHit();
+                    ModLog.i("hook", "hooked cached {}#{} (hits={})", hookCache.getClassName(), hookCache.getLifecycle(), hookCache.getHits());
+                    return;
+                }
+                ModLog.i("hook", "cached hook {}#{} no longer valid, probing", hookCache.getClassName(), hookCache.getLifecycle());
+            }
+
+            String hookedClass = null;
+            String hookedLifecycle = null;
             for (String candidate : CANDIDATE_STATUSBAR_CLASSES) {
                 try {
                     final Class<?> statusBarClass = XposedHelpers.findClassIfExists(candidate, cl);
                     if (statusBarClass == null) {
-                        XposedBridge.log("[StatusBarScroll] class not found: " + candidate);
+                        ModLog.d("hook", "class not found: {}", candidate);
                         continue;
                     }
 
                     // Hook onAttachedToWindow if available; fallback to onFinishInflate or onCreate
-                    String[] lifecycleCandidates = new String[]{"onAttachedToWindow", "onFinishInflate", "onCreate", "onLayout"};
-                    boolean hooked = false;
-                    for (String lifecycle : lifecycleCandidates) {
-                        try {
-                            XposedHelpers.findAndHookMethod(statusBarClass, lifecycle, new XC_MethodHook() {
-                                @Override
-                                protected void afterHookedMethod(MethodHookParam param) throws Throwable {
-                                    try {
-                                        // Respect user preference stored in module prefs
-                                        boolean enabled = readModuleEnabledFlag();
-                                        if (!enabled) {
-                                            XposedBridge.log("[StatusBarScroll] disabled in prefs");
-                                            return;
-                                        }
-
-                                        Object statusBarInstance = param.thisObject;
-                                        View statusBarView = extractViewFromInstance(statusBarInstance, cl);
-                                        if (statusBarView == null) {
-                                            XposedBridge.log("[StatusBarScroll] couldn't get statusBarView");
-                                            return;
-                                        }
-
-                                        installGestureOnStatusBar(statusBarView, cl);
-                                    } catch (Throwable t) {
-                                        XposedBridge.log("[StatusBarScroll] afterHookedMethod error: " + t);
-                                    }
-                                }
-                            });
-                            XposedBridge.log("[StatusBarScroll] hooked " + candidate + "#" + lifecycle);
-                            hooked = true;
+                    for (String lifecycle : LIFECYCLE_CANDIDATES) {
+                        if (hookLifecycle(statusBarClass, lifecycle, cl)) {
+                            hookedClass = candidate;
+                            hookedLifecycle = lifecycle;
                             break;
-                        } catch (Throwable t) {
-                            // method not found on this class - try next lifecycle method
-                            XposedBridge.log("[StatusBarScroll] can't hook " + candidate + " " + lifecycle + " : " + t.getMessage());
                         }
                     }
-                    if (hooked) break; // we hooked successfully - no need to try other classes
+                    if (hookedClass != null) break; // we hooked successfully - no need to try other classes
                 } catch (Throwable t) {
-                    XposedBridge.log("[StatusBarScroll] error with candidate " + candidate + " : " + t);
+                    ModLog.w("hook", "error with candidate {} : {}", candidate, t);
                 }
             }
+
+            hookCache.recordMiss(hookedClass, hookedLifecycle);
+            ModLog.i("hook", "hook cache miss (hits={}, misses={})", hookCache.getHits(), hookCache.getMisses());
+        } catch (Throwable t) {
+            ModLog.e("hook", "handleLoadPackage error: {}", t);
+        }
+    }
+
+    // Appends the module's metrics and log ring to "dumpsys activity service com.android.systemui/.SystemUIService";
+    // with DUMP_JSON_ARG only the metrics are printed, as one JSON object; DUMP_CHANNEL_TEST_ARG
+    // runs the scroll channel against local stand-ins instead
+    private void installDumpHook(ClassLoader cl) {
+        try {
+            Class<?> service = XposedHelpers.findClassIfExists("com.android.systemui.SystemUIService", cl);
+            if (service == null) return;
+            XposedBridge.hookAllMethods(service, "dump", new XC_MethodHook() {
+                @Override
+                protected void afterHookedMethod(MethodHookParam param) throws Throwable {
+                    PrintWriter pw = null;
+                    boolean json = false;
+                    boolean channelTest = false;
+                    for (Object arg : param.args) {
+                        if (arg instanceof PrintWriter) pw = (PrintWriter) arg;
+                        if (arg instanceof String[]) {
+                            json = Arrays.asList((String[]) arg).contains(DUMP_JSON_ARG);
+                            channelTest = Arrays.asList((String[]) arg).contains(DUMP_CHANNEL_TEST_ARG);
+                        }
+                    }
+                    if (pw == null) return;
+                    if (channelTest) {
+                        ScrollChannelSelfTest.run(pw);
+                    } else if (json) {
+                        pw.println(metrics.toJson(hookCache));
+                    } else {
+                        metrics.dump(pw, hookCache);
+                        ModLog.dump(pw);
+                    }
+                }
+            });
+        } catch (Throwable t) {
+            ModLog.w("hook", "can't hook SystemUIService#dump: {}", t);
+        }
+    }
+
+    // Hooks a single lifecycle method of the status bar class; false if the method doesn't exist
+    private boolean hookLifecycle(Class<?> statusBarClass, String lifecycle, final ClassLoader cl) {
+        try {
+            XposedHelpers.findAndHookMethod(statusBarClass, lifecycle, new XC_MethodHook() {
+                @Override
+                protected void afterHookedMethod(MethodHookParam param) throws Throwable {
+                    try {
+                        // Respect user preference stored in module prefs
+                        if (!ModuleConfig.get().enabled) {
+                            ModLog.d("hook", "disabled in prefs");
+                            return;
+                        }
+
+                        Object statusBarInstance = param.thisObject;
+                        View statusBarView = extractViewFromInstance(statusBarInstance, cl);
+                        if (statusBarView == null) {
+                            ModLog.w("hook", "couldn't get statusBarView");
+                            return;
+                        }
+
+                        installGestureOnStatusBar(statusBarView, statusBarInstance, cl);
+                    } catch (Throwable t) {
+                        ModLog.e("hook", "afterHookedMethod error: {}", t);
+                    }
+                }
+            });
+            ModLog.i("hook", "hooked {}#{}", statusBarClass, lifecycle);
+            return true;
         } catch (Throwable t) {
-            XposedBridge.log("[StatusBarScroll] handleLoadPackage error: " + t);
+            // method not found on this class - try next lifecycle method
+            ModLog.d("hook", "can't hook {} {} : {}", statusBarClass, lifecycle, t.getMessage());
+            return false;
         }
     }
 
@@ -104,500 +202,367 @@ public class XposedMod implements IXposedHookLoadPackage {
                 return (View) instance;
             }
 
+            // Field that held the view last time on this build. Only if the class no longer has
+            // it does another field take its place in the cache: one that is just null right
+            // now (early lifecycle call) stays, or a lower-priority field would win for good.
+            String cachedField = hookCache != null ? hookCache.getField() : null;
+            boolean cachedFieldGone = true;
+            if (cachedField != null) {
+                try {
+                    Field field = XposedHelpers.findFieldIfExists(instance.getClass(), cachedField);
+                    if (field != null) {
+                        cachedFieldGone = false;
+                        Object val = field.get(instance);
+                        if (val instanceof View) return (View) val;
+                    }
+                } catch (Throwable ignored) { /* fall back to probing */ }
+            }
+
             // Common field names that might hold the status bar view
-            String[] fieldCandidates = new String[]{"mStatusBarView", "mStatusBarWindow", "mStatusBar", "mView", "mRootView"};
-            for (String f : fieldCandidates) {
+            for (String f : FIELD_CANDIDATES) {
+                if (f.equals(cachedField)) continue;
                 try {
                     Object val = XposedHelpers.getObjectField(instance, f);
-                    if (val instanceof View) return (View) val;
+                    if (val instanceof View) {
+                        if (hookCache != null && cachedFieldGone) hookCache.recordField(f);
+                        return (View) val;
+                    }
                 } catch (Throwable ignored) { /* try next */ }
             }
         } catch (Throwable t) {
-            XposedBridge.log("[StatusBarScroll] extractViewFromInstance error: " + t);
+            ModLog.w("hook", "extractViewFromInstance error: {}", t);
         }
         return null;
     }
 
-    private void installGestureOnStatusBar(final View statusBarView, final ClassLoader cl) {
+    // Idempotent: the onLayout/onAttachedToWindow/... hooks fire many times, but a view only
+    // gets its listener once. SystemUI's own OnTouchListener, if any, keeps running first.
+    private void installGestureOnStatusBar(final View statusBarView, Object statusBarInstance, final ClassLoader cl) {
         try {
+            View.OnTouchListener current = getOnTouchListener(statusBarView);
+            if (current instanceof StatusBarTouchListener) return;
+
             final Context ctx = statusBarView.getContext();
-            final GestureDetector gesture = new GestureDetector(ctx, new GestureDetector.SimpleOnGestureListener() {
-                @Override
-                public boolean onDoubleTap(MotionEvent e) {
-                    XposedBridge.log("[StatusBarScroll] double-tap detected");
-                    // Post to UI thread quickly to avoid blocking
-                    new Handler(Looper.getMainLooper()).post(() -> {
-                        try {
-                            handleScrollToTop(cl);
-                        } catch (Throwable t) {
-                            XposedBridge.log("[StatusBarScroll] handleScrollToTop failed: " + t);
-                        }
-                    });
-                    return true;
-                }
-            });
+            if (scrollChannel == null) scrollChannel = ScrollChannelHost.forProcess(ctx);
+            if (mainHandler == null) mainHandler = new Handler(Looper.getMainLooper());
+            if (scrollRunnable == null) {
+                scrollRunnable = () -> {
+                    try {
+                        handleScrollToTop(cl);
+                    } catch (Throwable t) {
+                        ModLog.e("tap", "handleScrollToTop failed: {}", t);
+                    }
+                };
+            }
+            if (scheduler == null) scheduler = new ScrollRequestScheduler(mainHandler, scrollRunnable, metrics);
 
-            // Keep existing touch behavior intact by returning false
-            statusBarView.setOnTouchListener((v, event) -> {
-                try {
-                    gesture.onTouchEvent(event);
-                } catch (Throwable t) {
-                    XposedBridge.log("[StatusBarScroll] gesture error: " + t);
-                }
-                return false;
-            });
+            StatusBarTouchListener listener = new StatusBarTouchListener(current, scheduler, metrics,
+                    new ShadeState(statusBarInstance), mainHandler, traceRecorder);
+            statusBarView.setOnTouchListener(listener);
+            if (gestureInstalls == 0 && ModuleConfig.get().warmUp) scheduleWarmUp(listener, statusBarView, cl);
 
-            XposedBridge.log("[StatusBarScroll] gesture installed on statusBarView");
+            gestureInstalls++;
+            ModLog.i("hook", "gesture installed on {} (installs={}, chained={})", statusBarView.getClass(), gestureInstalls, current != null);
         } catch (Throwable t) {
-            XposedBridge.log("[StatusBarScroll] installGestureOnStatusBar error: " + t);
+            ModLog.e("hook", "installGestureOnStatusBar error: {}", t);
         }
     }
 
-    // Reads a boolean flag from module prefs in the module package (module's own context)
-    // NOTE: when running inside SystemUI, getModuleContext is not available; this reads
-    // the prefs file directly via the file-based SharedPreferences path (best-effort).
-    private boolean readModuleEnabledFlag() {
-        try {
-            // Attempt to read prefs via direct file path in /data/data/<module-package>/shared_prefs/
-            // Change package name below to your module package if required.
-            String modulePackage = "com.yourdomain.statusbarscroll"; // <-- change to your module package
-            String prefsFilePath = "/data/data/" + modulePackage + "/shared_prefs/" + PREFS_NAME + ".xml";
-            // Use XposedHelpers to read SharedPreferences if possible (some frameworks support it)
-            try {
-                Context appCtx = (Context) XposedHelpers.callStaticMethod(
-                        XposedHelpers.findClass("android.app.ActivityThread", null),
-                        "currentApplication");
-                if (appCtx != null) {
-                    Context moduleCtx = appCtx.createPackageContext(modulePackage, Context.CONTEXT_IGNORE_SECURITY);
-                    SharedPreferences prefs = moduleCtx.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-                    return prefs.getBoolean(PREF_ENABLE_KEY, true);
-                }
-            } catch (Throwable t) {
-                // fallback - try reading via default (true)
-                XposedBridge.log("[StatusBarScroll] couldn't read module prefs via context: " + t);
-            }
-            // default to enabled if we can't read prefs
-            return true;
-        } catch (Throwable t) {
-            XposedBridge.log("[StatusBarScroll] readModuleEnabledFlag error: " + t);
-            return true;
-        }
+    // Pays the first tap's one-time costs while SystemUI is idle: the root view accessor, the
+    // detector and shade lookups, class lookups and strategies for what is on screen, and the
+    // selector's worker thread. Once per process.
+    private void scheduleWarmUp(final StatusBarTouchListener listener, final View statusBarView, final ClassLoader cl) {
+        IdleWarmUp.schedule(mainHandler, metrics,
+                new String[]{"roots", "detector", "search", "worker"},
+                new Runnable[]{
+                        () -> {
+                            if (rootViewResolver == null) rootViewResolver = new RootViewResolver(cl);
+                            rootViewResolver.collect();
+                            rootViewResolver.clear();
+                        },
+                        () -> listener.warmUp(statusBarView),
+                        () -> warmUpSearch(cl),
+                        () -> targetSelector().prestart(),
+                });
     }
 
-    // Main routine: iterate root views and find the first scrollable widget, then scroll it to top
-    private void handleScrollToTop(ClassLoader cl) {
+    // The search over every window on screen now, result thrown away: classifies the view
+    // classes, resolves the strategies of the scrollables found and runs the snapshot code once
+    private void warmUpSearch(ClassLoader cl) {
+        if (rootViewResolver == null) rootViewResolver = new RootViewResolver(cl);
+        RootViewResolver resolver = rootViewResolver;
+        TreeSnapshot<View> snapshot = new TreeSnapshot<>(ViewTreeAdapter.INSTANCE);
+        ModuleConfig config = ModuleConfig.get();
+        snapshot.setNodeBudget(config.nodeBudget);
+        snapshot.setTimeBudgetNanos(config.timeBudgetNanos);
+        int[] location = new int[2];
         try {
-            // Get WindowManagerGlobal instance through reflection
-            Class<?> wmgClass = XposedHelpers.findClassIfExists("android.view.WindowManagerGlobal", cl);
-            if (wmgClass == null) {
-                wmgClass = XposedHelpers.findClassIfExists("android.view.WindowManagerImpl", cl);
+            int rootCount = resolver.collect();
+            for (int i = 0; i < rootCount; i++) {
+                View root = resolver.rootAt(i);
+                root.getLocationOnScreen(location);
+                snapshot.capture(root, location[0], location[1], root.hasWindowFocus());
             }
-            if (wmgClass == null) {
-                XposedBridge.log("[StatusBarScroll] WindowManagerGlobal class not found");
-                return;
+            snapshot.score();
+            for (int s = 0, n = snapshot.getCandidateCount(); s < n; s++) {
+                ScrollStrategies.forClass(snapshot.candidateAt(s));
             }
+            resolver.retainForTap(RootViewResolver.UNKNOWN, RootViewResolver.UNKNOWN);
+        } finally {
+            snapshot.clearRefs();
+            resolver.clear();
+        }
+    }
+
+    private TargetSelector targetSelector() {
+        if (targetSelector == null) targetSelector = new TargetSelector(targetMemo, metrics, mainHandler, traceRecorder, this::onTargetSelected);
+        return targetSelector;
+    }
 
-            Object wmgInstance = null;
+    // View keeps its OnTouchListener in mListenerInfo since JB, directly on the view before that
+    private static View.OnTouchListener getOnTouchListener(View view) {
+        try {
+            Object info = XposedHelpers.getObjectField(view, "mListenerInfo");
+            if (info == null) return null;
+            return (View.OnTouchListener) XposedHelpers.getObjectField(info, "mOnTouchListener");
+        } catch (Throwable t) {
             try {
-                // getInstance()
-                Method getInstance = wmgClass.getDeclaredMethod("getInstance");
-                getInstance.setAccessible(true);
-                wmgInstance = getInstance.invoke(null);
-            } catch (NoSuchMethodException nsm) {
-                // older versions may use getDefault()
-                try {
-                    Method getDefault = wmgClass.getDeclaredMethod("getDefault");
-                    getDefault.setAccessible(true);
-                    wmgInstance = getDefault.invoke(null);
-                } catch (Throwable t2) {
-                    XposedBridge.log("[StatusBarScroll] couldn't get WindowManagerGlobal instance: " + t2);
-                }
+                return (View.OnTouchListener) XposedHelpers.getObjectField(view, "mOnTouchListener");
+            } catch (Throwable ignored) {
+                return null;
             }
+        }
+    }
 
-            if (wmgInstance == null) {
-                XposedBridge.log("[StatusBarScroll] wmgInstance null");
-                return;
-            }
+    // Feeds the tap detector without consuming anything: the previous listener's result
+    // (or false) is returned, so SystemUI's touch handling is unchanged.
+    // The detector follows the configured trigger; it is rebuilt on a DOWN after the prefs changed.
+    private static final class StatusBarTouchListener implements View.OnTouchListener {
+        private final View.OnTouchListener wrapped;
+        private final ScrollRequestScheduler scheduler;
+        private final ScrollMetrics metrics;
+        private final ShadeState shade;
+        private final Handler handler;
+        private final TraceRecorder trace;
+        private final Runnable longPressCheck = this::onLongPressTimeout;
+
+        private ModuleConfig config;
+        private TapDetector detector;
+
+        // Where the current touch is, for picking the window the tap meant
+        private int displayId = RootViewResolver.UNKNOWN;
+        private float rawX = RootViewResolver.UNKNOWN;
+
+        StatusBarTouchListener(View.OnTouchListener wrapped, ScrollRequestScheduler scheduler, ScrollMetrics metrics,
+                               ShadeState shade, Handler handler, TraceRecorder trace) {
+            this.wrapped = wrapped;
+            this.scheduler = scheduler;
+            this.metrics = metrics;
+            this.shade = shade;
+            this.handler = handler;
+            this.trace = trace;
+        }
 
-            // Try to get root views array: method names vary
-            Object viewsObj = null;
-            String[] viewMethodNames = new String[]{"getRootViews", "getViewRootNames", "getViews", "getRootViewCount"}; // fallback names
-            for (String mName : new String[]{"getRootViews", "getViews"}) {
-                try {
-                    Method m = wmgClass.getDeclaredMethod(mName);
-                    m.setAccessible(true);
-                    viewsObj = m.invoke(wmgInstance);
-                    if (viewsObj != null) break;
-                } catch (Throwable ignored) { }
-            }
-            if (viewsObj == null) {
-                // on some ROMs WindowManagerGlobal has getRootViewInfos or returns List; try another approach:
-                try {
-                    Method m = wmgClass.getMethod("getRootViewCount");
-                    m.setAccessible(true);
-                    Object count = m.invoke(wmgInstance);
-                    if (count instanceof Integer) {
-                        int c = (Integer) count;
-                        List<View> tmp = new ArrayList<>();
-                        for (int i = 0; i < c; i++) {
-                            try {
-                                Method get = wmgClass.getMethod("getRootView", int.class);
-                                Object rv = get.invoke(wmgInstance, i);
-                                if (rv instanceof View) tmp.add((View) rv);
-                            } catch (Throwable ignored) { }
+        @Override
+        public boolean onTouch(View v, MotionEvent event) {
+            try {
+                int action = event.getActionMasked();
+                rawX = event.getRawX();
+                if (action == TapDetector.ACTION_DOWN) {
+                    displayId = RootViewResolver.displayIdOf(v);
+                    refreshDetector(v);
+                }
+                if (detector != null && config.enabled) {
+                    float x = event.getX();
+                    float y = event.getY();
+                    long eventTime = event.getEventTime();
+                    boolean fired = detector.onTouchEvent(action, x, y, eventTime);
+                    trace.recordTouch(action, x, y, eventTime, fired);
+                    if (fired) trigger(eventTime);
+                    if (detector.getMode() == TapDetector.MODE_LONG_PRESS) {
+                        if (action == TapDetector.ACTION_DOWN) {
+                            handler.removeCallbacks(longPressCheck);
+                            handler.postDelayed(longPressCheck, detector.getLongPressTimeout());
+                        } else if (action == TapDetector.ACTION_UP || action == TapDetector.ACTION_CANCEL) {
+                            handler.removeCallbacks(longPressCheck);
                         }
-                        viewsObj = tmp.toArray(new View[0]);
                     }
-                } catch (Throwable ignored) { }
+                }
+            } catch (Throwable t) {
+                ModLog.w("tap", "gesture error: {}", t);
             }
+            return wrapped != null && wrapped.onTouch(v, event);
+        }
 
-            View[] rootViews = null;
-            if (viewsObj instanceof View[]) {
-                rootViews = (View[]) viewsObj;
-            } else if (viewsObj instanceof List) {
-                List l = (List) viewsObj;
-                List<View> tmp = new ArrayList<>();
-                for (Object o : l) if (o instanceof View) tmp.add((View) o);
-                rootViews = tmp.toArray(new View[0]);
+        // Rebuilds the detector if the prefs changed since it was made
+        private void refreshDetector(View v) {
+            ModuleConfig c = ModuleConfig.get();
+            if (c != config) {
+                config = c;
+                detector = createDetector(v, c);
+                trace.recordConfig(detector);
             }
+        }
 
-            if (rootViews == null) {
-                XposedBridge.log("[StatusBarScroll] couldn't obtain root views");
-                return;
-            }
+        // Builds the detector before the first touch and runs a throwaway one through a tap,
+        // a double tap and a long press; also resolves the shade's fields
+        void warmUp(View v) {
+            refreshDetector(v);
+            TapDetector dummy = createDetector(v, config);
+            dummy.onTouchEvent(TapDetector.ACTION_DOWN, 0, 0, 1);
+            dummy.onTouchEvent(TapDetector.ACTION_MOVE, 1, 1, 2);
+            dummy.onTouchEvent(TapDetector.ACTION_UP, 1, 1, 3);
+            dummy.onTouchEvent(TapDetector.ACTION_DOWN, 0, 0, 4);
+            dummy.onTouchEvent(TapDetector.ACTION_UP, 0, 0, 5);
+            dummy.checkLongPress(dummy.getLongPressTimeout() + 5);
+            shade.expandedFraction();
+        }
 
-            for (View root : rootViews) {
-                try {
-                    View target = findFirstScrollable(root, cl);
-                    if (target != null) {
-                        XposedBridge.log("[StatusBarScroll] found scrollable: " + target.getClass().getName());
-                        performScrollToTop(target, cl);
-                        return;
-                    }
-                } catch (Throwable t) {
-                    XposedBridge.log("[StatusBarScroll] error scanning root view: " + t);
+        private void onLongPressTimeout() {
+            long now = SystemClock.uptimeMillis();
+            if (detector == null) return;
+            boolean fired = detector.checkLongPress(now);
+            trace.recordLongPress(now, fired);
+            if (fired) trigger(now);
+        }
+
+        private void trigger(long eventTime) {
+            // a touch that has started pulling the shade down is a drag, not a tap
+            if (shade.isOpenOrOpening()) {
+                if (ModLog.isLoggable(ModLog.DEBUG)) {
+                    ModLog.d("tap", "trigger ignored, shade expanded to {}", shade.expandedFraction());
                 }
+                return;
             }
+            ModLog.d("tap", "trigger detected");
+            metrics.onTapDetected(eventTime, SystemClock.uptimeMillis());
+            // posts the resolve, or folds the tap into the one already running
+            scheduler.request(displayId, (int) rawX);
+        }
 
-            XposedBridge.log("[StatusBarScroll] no scrollable found in root views");
-        } catch (Throwable t) {
-            XposedBridge.log("[StatusBarScroll] handleScrollToTop unexpected error: " + t);
+        private static TapDetector createDetector(View v, ModuleConfig c) {
+            ViewConfiguration vc = ViewConfiguration.get(v.getContext());
+            float slop = c.tapSlopDp > 0
+                    ? c.tapSlopDp * v.getResources().getDisplayMetrics().density
+                    : vc.getScaledTouchSlop();
+            return new TapDetector(c.gestureType, slop, vc.getScaledDoubleTapSlop(),
+                    ViewConfiguration.getDoubleTapTimeout(), ViewConfiguration.getLongPressTimeout());
         }
     }
 
-    // Recursively searches for a scrollable child - uses reflection-aware checks for RecyclerView
-    private View findFirstScrollable(View root, ClassLoader cl) {
-        if (root == null) return null;
+    // Main routine: collect the root views, then let the selector pick the best visible
+    // scrollable among them; the scroll happens in onTargetSelected
+    private void handleScrollToTop(ClassLoader cl) {
         try {
-            // Check AbsListView (ListView, GridView)
-            if (root instanceof android.widget.AbsListView) return root;
-            // Check ScrollView
-            if (root instanceof android.widget.ScrollView) return root;
-            // Check WebView
-            if (root instanceof android.webkit.WebView) return root;
-
-            // RecyclerView may be from android.support or androidx; check via reflection
-            Class<?> rvClass = XposedHelpers.findClassIfExists("androidx.recyclerview.widget.RecyclerView", cl);
-            if (rvClass == null) rvClass = XposedHelpers.findClassIfExists("android.support.v7.widget.RecyclerView", cl);
-            if (rvClass != null) {
-                if (rvClass.isInstance(root)) return root;
+            if (targetSelector().isBusy()) {
+                // the running selection answers for this tap too, and ends the scheduler's
+                // in-flight state when it completes
+                metrics.recordCoalesced();
+                ModLog.d("tap", "tap coalesced into the running selection");
+                return;
+            }
+            long resolveStart = System.nanoTime();
+            if (rootViewResolver == null) rootViewResolver = new RootViewResolver(cl);
+            RootViewResolver resolver = rootViewResolver;
+            boolean firstResolve = !resolver.isResolved();
+
+            int rootCount = resolver.collect();
+            if (firstResolve) {
+                ModLog.i("roots", "root view lookup: first {}us resolve + {}us read, later taps read only",
+                        resolver.getResolveNanos() / 1000, resolver.getLastCollectNanos() / 1000);
+            }
+            if (rootCount == 0) {
+                ModLog.w("roots", "couldn't obtain root views");
+                metrics.recordOutcome(ScrollMetrics.OUTCOME_NO_ROOTS);
+                scheduler.onNothingScrolled();
+                return;
+            }
+            // Only windows on the tapped display, of a content type, and under the tap if any
+            // are; none left just means the tap goes to the app side
+            rootCount = resolver.retainForTap(scheduler.getTapDisplayId(), scheduler.getTapX());
+            metrics.recordWindows(rootCount, resolver.getSkippedCount());
+            if (ModLog.isLoggable(ModLog.DEBUG)) {
+                ModLog.d("roots", "{} window(s) to search, {} skipped", rootCount, resolver.getSkippedCount());
             }
 
-            // If ViewGroup, recurse
-            if (root instanceof ViewGroup) {
-                ViewGroup vg = (ViewGroup) root;
-                for (int i = 0; i < vg.getChildCount(); i++) {
-                    View found = findFirstScrollable(vg.getChildAt(i), cl);
-                    if (found != null) return found;
+            // Memo hits compete as they are; every other root is copied for off-thread scoring
+            TargetSelector selector = targetSelector;
+            selector.begin(resolveStart);
+            try {
+                for (int i = 0; i < rootCount; i++) {
+                    try {
+                        View root = resolver.rootAt(i);
+                        int memo = targetMemo.lookup(root);
+                        metrics.recordMemo(memo != ScrollTargetMemo.LOOKUP_MISS);
+                        if (memo == ScrollTargetMemo.LOOKUP_TARGET) {
+                            long score = targetMemo.getTargetScore();
+                            selector.offer(targetMemo.getTarget(), score);
+                        } else if (memo == ScrollTargetMemo.LOOKUP_MISS) {
+                            selector.capture(root);
+                        }
+                    } catch (Throwable t) {
+                        ModLog.w("search", "error capturing root view: {}", t);
+                        metrics.recordOutcome(ScrollMetrics.OUTCOME_ERROR);
+                    }
                 }
+            } finally {
+                resolver.clear();
             }
+            metrics.recordStage(ScrollMetrics.STAGE_CAPTURE, System.nanoTime() - resolveStart);
+            selector.finish();
         } catch (Throwable t) {
-            XposedBridge.log("[StatusBarScroll] findFirstScrollable error: " + t);
+            ModLog.e("tap", "handleScrollToTop unexpected error: {}", t);
+            metrics.recordOutcome(ScrollMetrics.OUTCOME_ERROR);
+            scheduler.onNothingScrolled();
         }
-        return null;
     }
 
-    // Performs scrolling using reflection-safe calls
-    private void performScrollToTop(final View v, ClassLoader cl) {
+    // Main thread, once the selector is done; the best target over all windows, or null
+    private void onTargetSelected(View best, long score, long resolveStart) {
         try {
-            if (v == null) return;
-
-            // If RecyclerView
-            Class<?> rvClass = XposedHelpers.findClassIfExists("androidx.recyclerview.widget.RecyclerView", cl);
-            if (rvClass == null) rvClass = XposedHelpers.findClassIfExists("android.support.v7.widget.RecyclerView", cl);
-            if (rvClass != null && rvClass.isInstance(v)) {
-                try {
-                    Method smooth = rvClass.getMethod("smoothScrollToPosition", int.class);
-                    smooth.invoke(v, 0);
-                    return;
-                } catch (Throwable t) {
-                    // fallback: call scrollToPosition if exists
-                    try {
-                        Method scroll = rvClass.getMethod("scrollToPosition", int.class);
-                        scroll.invoke(v, 0);
-                        return;
-                    } catch (Throwable t2) {
-                        XposedBridge.log("[StatusBarScroll] RecyclerView scroll method failed: " + t2);
-                    }
+            metrics.recordStage(ScrollMetrics.STAGE_RESOLVE, System.nanoTime() - resolveStart);
+            if (best != null) {
+                // the score would be boxed on every tap
+                if (ModLog.isLoggable(ModLog.DEBUG)) {
+                    ModLog.d("search", "scrolling {} (score {})", best.getClass(), score);
                 }
-            }
-
-            // AbsListView (ListView / GridView)
-            if (v instanceof android.widget.AbsListView) {
-                try {
-                    Method m = android.widget.AbsListView.class.getMethod("smoothScrollToPositionFromTop", int.class, int.class);
-                    m.invoke(v, 0, 0);
-                    return;
-                } catch (Throwable t) {
-                    // fallback to setSelection
-                    try {
-                        Method setSel = android.widget.AbsListView.class.getMethod("setSelection", int.class);
-                        setSel.invoke(v, 0);
-                        return;
-                    } catch (Throwable t2) {
-                        XposedBridge.log("[StatusBarScroll] AbsListView scroll failed: " + t2);
-                    }
-                }
-            }
-
-            // ScrollView
-            if (v instanceof android.widget.ScrollView) {
-                ((android.widget.ScrollView) v).post(() -> ((android.widget.ScrollView) v).smoothScrollTo(0, 0));
+                long scrollStart = System.nanoTime();
+                boolean smooth = performScrollToTop(best);
+                metrics.recordStage(ScrollMetrics.STAGE_SCROLL, System.nanoTime() - scrollStart);
+                scheduler.onScrolled(best, smooth);
+                metrics.recordScrolled(ScrollKinds.kindOf(best));
+                metrics.onScrollDispatched(SystemClock.uptimeMillis());
                 return;
             }
 
-            // WebView
-            if (v instanceof android.webkit.WebView) {
-                try {
-                    android.webkit.WebView wv = (android.webkit.WebView) v;
-                    // best-effort: evaluate JS to scroll to top
-                    wv.post(() -> {
-                        try {
-                            // prefer pageUp if it exists
-                            boolean result = wv.pageUp(true);
-                            if (!result) {
-                                // fallback to JS
-                                try {
-                                    wv.evaluateJavascript("window.scrollTo(0,0);", null);
-                                } catch (Throwable t) {
-                                    wv.scrollTo(0, 0);
-                                }
-                            }
-                        } catch (Throwable ignored) { wv.scrollTo(0,0); }
-                    });
-                    return;
-                } catch (Throwable t) {
-                    XposedBridge.log("[StatusBarScroll] WebView scroll failed: " + t);
-                }
+            // Nothing to scroll in SystemUI's own windows: hand the tap to the foreground app
+            scheduler.onNothingScrolled();
+            metrics.recordOutcome(ScrollMetrics.OUTCOME_NO_SCROLLABLE);
+            int delivered = scrollChannel != null ? scrollChannel.deliverToForeground(scheduler.getTapDisplayId(), scheduler.getTapX()) : 0;
+            if (delivered > 0) {
+                metrics.recordOutcome(ScrollMetrics.OUTCOME_DELIVERED);
+                metrics.onScrollDispatched(SystemClock.uptimeMillis());
             }
+            ModLog.d("search", "no scrollable found in root views, delivered to {} foreground app(s)", delivered);
+        } catch (Throwable t) {
+            ModLog.e("tap", "onTargetSelected unexpected error: {}", t);
+            metrics.recordOutcome(ScrollMetrics.OUTCOME_ERROR);
+            scheduler.onNothingScrolled();
+        }
+    }
 
-            // Generic fallback: call view.scrollTo(0,0) on UI thread
-            v.post(() -> {
-                try {
-                    v.scrollTo(0, 0);
-                } catch (Throwable t) {
-                    XposedBridge.log("[StatusBarScroll] fallback scrollTo failed: " + t);
-                }
-            });
+    // Dispatches through the per-class strategy registry; must run on the main thread.
+    // Returns true if a smooth scroll was started.
+    private boolean performScrollToTop(View v) {
+        try {
+            if (v == null) return false;
+            ModuleConfig config = ModuleConfig.get();
+            boolean instant = config.animationMode == ModuleConfig.ANIMATION_INSTANT;
+            ScrollStrategies.scrollToTop(v, instant, config.fastScrollScreens);
+            return !instant;
         } catch (Throwable t) {
-            XposedBridge.log("[StatusBarScroll] performScrollToTop unexpected: " + t);
+            ModLog.e("scroll", "performScrollToTop unexpected: {}", t);
+            return false;
         }
     }
-}
-	/* Some sort of crappy IPC */
-	class ScrollViewReceiver extends BroadcastReceiver {
-		private ScrollView mScrollView;
-		public ScrollViewReceiver(ScrollView view) {
-			mScrollView = view;
-		}
-
-		@Override
-		public void onReceive(Context context, Intent intent) {
-			if (isViewInViewBounds(getContentViewFromContext(mScrollView.getContext()), mScrollView))
-				mScrollView.smoothScrollTo(0, 0);
-		}
-	};
-
-	class AbsListViewReceiver extends BroadcastReceiver {
-		private AbsListView mListView;
-		public AbsListViewReceiver(AbsListView view) {
-			mListView = view;
-		}
-
-		@Override
-		public void onReceive(Context context, Intent intent) {
-			if (isViewInViewBounds(getContentViewFromContext(mListView.getContext()), mListView))
-				mListView.smoothScrollToPosition(0);
-		}
-	}
-
-	@Override
-	public void initZygote(StartupParam startupParam) throws Throwable {
-		/* AbsListView, it's one instance of a scroller */
-		findAndHookMethod(AbsListView.class, "initAbsListView", new XC_MethodHook() {
-			@Override
-			protected void afterHookedMethod(MethodHookParam param) throws Throwable {
-				AbsListView view = (AbsListView) param.thisObject;
-				if (!(view.getContext() instanceof Activity))
-					return;
-				Activity activity = (Activity) view.getContext();		
-				AbsListViewReceiver receiver = new AbsListViewReceiver(view);
-				addReceiverToActivity(activity, receiver);
-				activity.registerReceiver(receiver, new IntentFilter(INTENT_SCROLL_TO_TOP));
-			}
-		});
-
-		/* Another one */
-		findAndHookMethod(ScrollView.class, "initScrollView", new XC_MethodHook() {
-			@Override
-			protected void afterHookedMethod(MethodHookParam param) throws Throwable {
-				ScrollView view = (ScrollView) param.thisObject;
-				if (!(view.getContext() instanceof Activity))
-					return;
-				Activity activity = (Activity) view.getContext();		
-				ScrollViewReceiver receiver = new ScrollViewReceiver(view);
-				addReceiverToActivity(activity, receiver);
-				activity.registerReceiver(receiver, new IntentFilter(INTENT_SCROLL_TO_TOP));
-			}
-		});
-
-		/* FYI, there are some manufacturer specific ones, like Samsung's TouchWiz ones.
-		 * I'll look into those later on...
-		 */
-
-		/* We need to register and unregister receivers in onPause and onResume 
-		 * otherwise, Android bitches about it (for good (memory) reason(s) probably). We do that
-		 * by keeping an ArrayList of BroadcastReceivers in all activities. There might be a better
-		 * way...
-		 */
-		Class<?> ActivityClass = findClass("android.app.Activity", null);
-		findAndHookMethod(ActivityClass, "onResume", new XC_MethodHook() {
-			@Override
-			protected void afterHookedMethod(MethodHookParam param) throws Throwable {
-				Activity activity = (Activity) param.thisObject;
-				resumeBroadcastReceivers(activity);
-			}
-		});
-
-		findAndHookMethod(ActivityClass, "onPause", new XC_MethodHook() {
-			@Override
-			protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
-				Activity activity = (Activity) param.thisObject;
-				pauseBroadcastReceivers(activity);
-			}
-		});
-	}
-
-	@Override
-	public void handleLoadPackage(LoadPackageParam lpparam) throws Throwable {
-		if (!lpparam.packageName.equals("com.android.systemui"))
-			return;
-
-		Class<?> StatusBarWindowView = findClass("com.android.systemui.statusbar.phone.StatusBarWindowView",
-				lpparam.classLoader);
-
-		findAndHookMethod(StatusBarWindowView, "onInterceptTouchEvent", MotionEvent.class, new XC_MethodHook() {
-			@Override
-			protected void afterHookedMethod(MethodHookParam param) throws Throwable {
-				MotionEvent ev = (MotionEvent) param.args[0];
-				View view = (View) param.thisObject;
-				switch (ev.getAction() & MotionEvent.ACTION_MASK) {
-				case MotionEvent.ACTION_DOWN:
-					mDownX = ev.getX();
-					mDownY = ev.getY();
-					mIsClick = true;
-					break;
-				case MotionEvent.ACTION_CANCEL:
-				case MotionEvent.ACTION_UP:
-					if (mIsClick) {
-						try {
-							/* Get NotificationPanelView instance, it subclasses PanelView */
-							Object notificationPanelView =
-									XposedHelpers.getObjectField(param.thisObject, "mNotificationPanel");
-
-							float expandedFraction = (Float) XposedHelpers.callMethod(notificationPanelView,
-									"getExpandedFraction");
-
-							if (expandedFraction < 0.1)
-								view.getContext().sendBroadcast(new Intent(INTENT_SCROLL_TO_TOP));
-						} catch (Throwable t) {
-							XposedBridge.log("StatusBarScrollToTop: Unable to determine expanded fraction: " + t.getMessage());
-							t.printStackTrace();
-							view.getContext().sendBroadcast(new Intent(INTENT_SCROLL_TO_TOP));
-						}
-					}
-					break;
-				case MotionEvent.ACTION_MOVE:
-					if (mIsClick && (Math.abs(mDownX - ev.getX()) > SCROLL_THRESHOLD || Math.abs(mDownY - ev.getY()) > SCROLL_THRESHOLD)) {
-						mIsClick = false;
-					}
-					break;
-				default:
-					break;
-				}
-			}
-		});
-	}
-
-	/* Helpers so the code looks less like shit */
-	private static void addReceiverToActivity(Activity activity, BroadcastReceiver receiver) {
-		ArrayList<BroadcastReceiver> receivers = getReceiversForActivity(activity);
-		receivers.add(receiver);
-		XposedHelpers.setAdditionalInstanceField(activity, KEY_RECEIVERS, receivers);
-	}
-
-	@SuppressWarnings("unchecked")
-	private static ArrayList<BroadcastReceiver> getReceiversForActivity(Activity activity) {
-		ArrayList<BroadcastReceiver> receivers = null;
-		try {
-			receivers = (ArrayList<BroadcastReceiver>) XposedHelpers.getAdditionalInstanceField(activity,
-					KEY_RECEIVERS);
-		} catch (Throwable t) {
-			t.printStackTrace();
-		}
-
-		if (receivers == null) {
-			receivers = new ArrayList<BroadcastReceiver>();
-		}
-
-		return receivers;
-	}
-
-	private static void resumeBroadcastReceivers(Activity activity) {
-		ArrayList<BroadcastReceiver> receivers = getReceiversForActivity(activity);
-		for (BroadcastReceiver receiver : receivers) {
-			activity.registerReceiver(receiver, new IntentFilter(INTENT_SCROLL_TO_TOP));
-		}
-	}
-
-	private static void pauseBroadcastReceivers(Activity activity) {
-		ArrayList<BroadcastReceiver> receivers = getReceiversForActivity(activity);
-		for (BroadcastReceiver receiver : receivers) {
-			activity.unregisterReceiver(receiver);
-		}
-	}
-
-	/* Check if the View is visible to the user, i.e on screen.
-	 * We do this since in tabbed interfaces, we can cause a scrollbar that's off screen
-	 * to go to the top as well as the visible one.
-	 */
-	private static boolean isViewInViewBounds(View mainView, View view) {
-		/* Failsafe */
-		if (mainView == null)
-			return true;
-
-		Rect bounds = new Rect();
-		mainView.getHitRect(bounds);
-		return view.getLocalVisibleRect(bounds);
-	}
-
-	/* This works because Context is actually Activity downcasted */
-	private static View getContentViewFromContext(Context context) {
-		if (!(context instanceof Activity))
-			return null;
-
-		return ((Activity) context).findViewById(android.R.id.content);
-	}
-
-	/* And that's a wrap */
 }
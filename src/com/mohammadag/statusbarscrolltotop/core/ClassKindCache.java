@@ -0,0 +1,33 @@
+package com.yourdomain.statusbarscroll.core;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+// Maps each concrete class to a kind once; later lookups are one identity-map hit.
+// (ClassValue would fit, but it isn't part of the Android runtime.)
+// Keyed weakly so classes from unloaded ClassLoaders can go away.
+public final class ClassKindCache {
+
+    public interface Classifier {
+        int classify(Class<?> c);
+    }
+
+    private final Map<Class<?>, Integer> kinds = new WeakHashMap<>();
+    private final Classifier classifier;
+
+    public ClassKindCache(Classifier classifier) {
+        this.classifier = classifier;
+    }
+
+    public int kindOf(Class<?> c) {
+        synchronized (kinds) {
+            Integer kind = kinds.get(c);
+            if (kind != null) return kind;
+        }
+        int kind = classifier.classify(c);
+        synchronized (kinds) {
+            kinds.put(c, kind);
+        }
+        return kind;
+    }
+}
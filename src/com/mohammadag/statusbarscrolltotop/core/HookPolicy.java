@@ -0,0 +1,25 @@
+package com.yourdomain.statusbarscroll.core;
+
+import java.util.Set;
+
+// Whether an app process gets the scroller hooks, from the module prefs as AppHooks reads
+// them: in denylist mode (the default) every app but the excluded ones, in allowlist mode only
+// the listed ones, and never the packages the caller rules out whatever the lists say.
+public final class HookPolicy {
+
+    public static final String MODE_DENYLIST = "denylist";
+    public static final String MODE_ALLOWLIST = "allowlist";
+
+    private HookPolicy() { }
+
+    // An unknown or missing mode is the denylist; a missing list is empty
+    public static boolean isHooked(String pkg, String[] neverHooked, String mode,
+                                   Set<String> hookedPackages, Set<String> excludedPackages) {
+        if (pkg == null) return false;
+        for (String never : neverHooked) {
+            if (never.equals(pkg)) return false;
+        }
+        if (MODE_ALLOWLIST.equals(mode)) return hookedPackages != null && hookedPackages.contains(pkg);
+        return excludedPackages == null || !excludedPackages.contains(pkg);
+    }
+}
@@ -0,0 +1,13 @@
+package com.yourdomain.statusbarscroll.core;
+
+// Supplies the window root nodes a tap should search, in window-manager order
+public interface RootSource<N> {
+
+    // Refreshes the roots and returns how many there are
+    int collect();
+
+    N rootAt(int index);
+
+    // Drops references held since the last collect()
+    void clear();
+}
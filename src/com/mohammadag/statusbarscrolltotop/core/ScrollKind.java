@@ -0,0 +1,27 @@
+package com.yourdomain.statusbarscroll.core;
+
+// Kinds of scroller the module knows how to move to the top
+public final class ScrollKind {
+
+    public static final int NONE = 0;
+    public static final int ABS_LIST_VIEW = 1;
+    public static final int SCROLL_VIEW = 2;
+    public static final int WEB_VIEW = 3;
+    public static final int RECYCLER_VIEW = 4;
+    public static final int NESTED_SCROLL_VIEW = 5;
+
+    public static final int COUNT = 6;
+
+    private ScrollKind() { }
+
+    public static String nameOf(int kind) {
+        switch (kind) {
+            case ABS_LIST_VIEW: return "AbsListView";
+            case SCROLL_VIEW: return "ScrollView";
+            case WEB_VIEW: return "WebView";
+            case RECYCLER_VIEW: return "RecyclerView";
+            case NESTED_SCROLL_VIEW: return "NestedScrollView";
+            default: return "none";
+        }
+    }
+}
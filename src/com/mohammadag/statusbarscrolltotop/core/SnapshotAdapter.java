@@ -0,0 +1,20 @@
+package com.yourdomain.statusbarscroll.core;
+
+// Raw per-node state a TreeSnapshot copies during its UI-thread pass. Everything derived
+// from it (screen position, clipping, focus and elevation of ancestors, scores) is computed
+// later from the copied arrays, off the UI thread.
+public interface SnapshotAdapter<N> extends TreeAdapter<N> {
+
+    // Writes left, top, right, bottom (in the parent's content coordinates), then the node's
+    // own scrollX and scrollY, to out[offset] .. out[offset + 5]
+    void readGeometry(N node, int[] out, int offset);
+
+    // True if the node itself holds input focus
+    boolean isFocusedNode(N node);
+
+    // True if the node itself has a positive elevation
+    boolean hasElevation(N node);
+
+    // True if the node scrolls sideways but not vertically; only asked of scrollable nodes
+    boolean isHorizontalOnly(N node);
+}
@@ -0,0 +1,130 @@
+package com.yourdomain.statusbarscroll.core;
+
+// Preallocated tap state machine, in the spirit of the legacy mDownX/mDownY/
+// SCROLL_THRESHOLD click detection. Fed from an OnTouchListener, it keeps only primitive
+// state and allocates nothing per MotionEvent. Three trigger modes:
+//  - MODE_SINGLE_TAP fires on the UP of a touch that stayed within the slop, with no wait
+//    for a possible second tap; like the legacy click detection.
+//  - MODE_DOUBLE_TAP fires on the second DOWN, like GestureDetector.
+//  - MODE_LONG_PRESS fires once the finger has rested long enough. No event arrives while
+//    it rests, so the caller schedules checkLongPress() for getLongPressTimeout() after DOWN.
+// Takes raw action/x/y/time so it runs off-device; the action values are MotionEvent's.
+public final class TapDetector {
+
+    public static final int ACTION_DOWN = 0;
+    public static final int ACTION_UP = 1;
+    public static final int ACTION_MOVE = 2;
+    public static final int ACTION_CANCEL = 3;
+    public static final int ACTION_POINTER_DOWN = 5;
+
+    public static final int MODE_DOUBLE_TAP = 0;
+    public static final int MODE_SINGLE_TAP = 1;
+    public static final int MODE_LONG_PRESS = 2;
+
+    private final int mode;
+    private final float touchSlop;
+    private final float doubleTapSlop;
+    private final long doubleTapTimeout;
+    private final long longPressTimeout;
+
+    private float downX;
+    private float downY;
+    private long downTime;
+    private boolean isClick;
+
+    // Where and when the last clean tap ended; 0 when there is no pending first tap
+    private long lastTapUpTime;
+    private float lastTapX;
+    private float lastTapY;
+
+    // Double-tap detector
+    public TapDetector(float touchSlop, float doubleTapSlop, long doubleTapTimeout) {
+        this(MODE_DOUBLE_TAP, touchSlop, doubleTapSlop, doubleTapTimeout, Long.MAX_VALUE);
+    }
+
+    // longPressTimeout also bounds a single tap: a touch held that long isn't a tap
+    public TapDetector(int mode, float touchSlop, float doubleTapSlop, long doubleTapTimeout, long longPressTimeout) {
+        this.mode = mode;
+        this.touchSlop = touchSlop;
+        this.doubleTapSlop = doubleTapSlop;
+        this.doubleTapTimeout = doubleTapTimeout;
+        this.longPressTimeout = longPressTimeout;
+    }
+
+    public int getMode() {
+        return mode;
+    }
+
+    public long getLongPressTimeout() {
+        return longPressTimeout;
+    }
+
+    public float getTouchSlop() {
+        return touchSlop;
+    }
+
+    public float getDoubleTapSlop() {
+        return doubleTapSlop;
+    }
+
+    public long getDoubleTapTimeout() {
+        return doubleTapTimeout;
+    }
+
+    // Returns true when this event completes the gesture; action is the masked action
+    public boolean onTouchEvent(int action, float x, float y, long eventTime) {
+        switch (action) {
+            case ACTION_DOWN:
+                boolean second = mode == MODE_DOUBLE_TAP
+                        && lastTapUpTime != 0
+                        && eventTime - lastTapUpTime <= doubleTapTimeout
+                        && Math.abs(x - lastTapX) <= doubleTapSlop
+                        && Math.abs(y - lastTapY) <= doubleTapSlop;
+                downX = x;
+                downY = y;
+                downTime = eventTime;
+                isClick = true;
+                if (second) {
+                    // consumed; the matching UP must not start another pair
+                    lastTapUpTime = 0;
+                    isClick = false;
+                    return true;
+                }
+                return false;
+            case ACTION_MOVE:
+                if (isClick && (Math.abs(downX - x) > touchSlop || Math.abs(downY - y) > touchSlop)) {
+                    isClick = false;
+                }
+                return false;
+            case ACTION_UP:
+                boolean fire = false;
+                if (isClick && mode == MODE_SINGLE_TAP) {
+                    fire = eventTime - downTime < longPressTimeout;
+                    lastTapUpTime = 0;
+                } else if (isClick && mode == MODE_DOUBLE_TAP) {
+                    lastTapUpTime = eventTime;
+                    lastTapX = downX;
+                    lastTapY = downY;
+                } else {
+                    lastTapUpTime = 0;
+                }
+                isClick = false;
+                return fire;
+            case ACTION_CANCEL:
+            case ACTION_POINTER_DOWN:
+                isClick = false;
+                lastTapUpTime = 0;
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    // MODE_LONG_PRESS: true if the touch that went down is still resting within the slop and
+    // has lasted the timeout. Fires at most once per touch.
+    public boolean checkLongPress(long now) {
+        if (mode != MODE_LONG_PRESS || !isClick || now - downTime < longPressTimeout) return false;
+        isClick = false;
+        return true;
+    }
+}
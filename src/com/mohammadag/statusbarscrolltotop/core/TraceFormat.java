@@ -0,0 +1,87 @@
+package com.yourdomain.statusbarscroll.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// Streaming binary trace of what the module saw and decided, written on the device and
+// read back by TraceReplay. Big-endian DataOutput throughout. A file is one recording
+// session: a header followed by records, each a type byte and its fields:
+//
+//   header     int MAGIC, int VERSION, UTF label (build fingerprint), long wall clock millis
+//   CONFIG     int mode, float touchSlop, float doubleTapSlop, long doubleTapTimeout,
+//              long longPressTimeout                                  (detector (re)built)
+//   TOUCH      byte action, float x, float y, long eventTime, boolean fired
+//   LONG_PRESS long uptime, boolean fired                             (scheduled check ran)
+//   SELECTION  long uptime, long captureNanos, long scoreNanos, long knownScore,
+//              TreeSnapshot rows, int best candidate, long best score
+//
+// knownScore is the best score the memo answered with for roots that weren't captured.
+// A reader that meets an unknown record type has to stop: records carry no length. A session
+// that ended in a crash may stop mid-record; that only ever cuts off the end of its own file.
+public final class TraceFormat {
+
+    public static final int MAGIC = 0x53425354; // "SBST"
+    public static final int VERSION = 1;
+
+    public static final byte RECORD_CONFIG = 1;
+    public static final byte RECORD_TOUCH = 2;
+    public static final byte RECORD_LONG_PRESS = 3;
+    public static final byte RECORD_SELECTION = 4;
+
+    private TraceFormat() { }
+
+    public static void writeHeader(DataOutput out, String label, long wallClockMillis) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(label != null ? label : "");
+        out.writeLong(wallClockMillis);
+    }
+
+    // Returns the label; throws if the stream isn't a trace this version can read
+    public static String readHeader(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("not a scroll trace");
+        int version = in.readInt();
+        if (version != VERSION) throw new IOException("unsupported trace version " + version);
+        String label = in.readUTF();
+        in.readLong();
+        return label;
+    }
+
+    public static void writeConfig(DataOutput out, TapDetector detector) throws IOException {
+        out.writeByte(RECORD_CONFIG);
+        out.writeInt(detector.getMode());
+        out.writeFloat(detector.getTouchSlop());
+        out.writeFloat(detector.getDoubleTapSlop());
+        out.writeLong(detector.getDoubleTapTimeout());
+        out.writeLong(detector.getLongPressTimeout());
+    }
+
+    public static void writeTouch(DataOutput out, int action, float x, float y, long eventTime, boolean fired) throws IOException {
+        out.writeByte(RECORD_TOUCH);
+        out.writeByte(action);
+        out.writeFloat(x);
+        out.writeFloat(y);
+        out.writeLong(eventTime);
+        out.writeBoolean(fired);
+    }
+
+    public static void writeLongPress(DataOutput out, long uptime, boolean fired) throws IOException {
+        out.writeByte(RECORD_LONG_PRESS);
+        out.writeLong(uptime);
+        out.writeBoolean(fired);
+    }
+
+    // Call after snapshot.score(), before the snapshot is reset
+    public static void writeSelection(DataOutput out, long uptime, long captureNanos, long scoreNanos, long knownScore,
+                                      TreeSnapshot<?> snapshot) throws IOException {
+        out.writeByte(RECORD_SELECTION);
+        out.writeLong(uptime);
+        out.writeLong(captureNanos);
+        out.writeLong(scoreNanos);
+        out.writeLong(knownScore);
+        snapshot.writeTo(out);
+        out.writeInt(snapshot.getBest());
+        out.writeLong(snapshot.getBestScore());
+    }
+}
@@ -0,0 +1,206 @@
+package com.yourdomain.statusbarscroll.core;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Desktop replay of traces recorded by the module, one file per session (pull them from
+// "/data/user_de/0/com.android.systemui/cache/statusbar_scroll_trace-*.bin" or the
+// equivalent data dir). Feeds the recorded touches through this build's TapDetector and
+// re-scores every recorded snapshot with this build's TreeSnapshot, then reports where the
+// decisions differ from what the recording build decided and how the timings compare:
+//
+//   java -cp <classes> com.yourdomain.statusbarscroll.core.TraceReplay trace.bin... [--repeat N] [--verbose]
+//
+// A file that is cut off or damaged is replayed up to the bad record; the files after it
+// are read as usual.
+// Replay timings are the median of N scorings of the same snapshot on this JVM, so they
+// compare builds on one machine; the device columns are what the phone measured.
+public final class TraceReplay {
+
+    private int touches;
+    private int touchMismatches;
+    private int longPressChecks;
+    private int longPressMismatches;
+    private int untracedTouches; // before the first CONFIG: no detector to replay them with
+    private int taps;
+    private int selections;
+    private int selectionMismatches;
+
+    private long[] deviceCapture = new long[64];
+    private long[] deviceScore = new long[64];
+    private long[] replayScore = new long[64];
+
+    private final int repeat;
+    private final boolean verbose;
+    private TapDetector detector;
+
+    private TraceReplay(int repeat, boolean verbose) {
+        this.repeat = repeat;
+        this.verbose = verbose;
+    }
+
+    public static void main(String[] args) throws IOException {
+        ArrayList<String> paths = new ArrayList<>();
+        int repeat = 20;
+        boolean verbose = false;
+        for (int i = 0; i < args.length; i++) {
+            if ("--repeat".equals(args[i]) && i + 1 < args.length) {
+                repeat = Math.max(1, Integer.parseInt(args[++i]));
+            } else if ("--verbose".equals(args[i])) {
+                verbose = true;
+            } else {
+                paths.add(args[i]);
+            }
+        }
+        if (paths.isEmpty()) {
+            System.err.println("usage: TraceReplay <trace.bin>... [--repeat N] [--verbose]");
+            System.exit(2);
+        }
+
+        TraceReplay replay = new TraceReplay(repeat, verbose);
+        for (String path : paths) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path)))) {
+                System.out.println(path + ": recorded on " + TraceFormat.readHeader(in));
+                // each session states its own config before its first touch
+                replay.detector = null;
+                replay.run(in);
+            } catch (IOException e) {
+                System.out.println(path + ": unreadable (" + e.getMessage() + "), skipped");
+            }
+        }
+        replay.report();
+    }
+
+    private void run(DataInputStream in) throws IOException {
+        while (true) {
+            byte type;
+            try {
+                type = in.readByte();
+            } catch (EOFException e) {
+                return;
+            }
+            try {
+                if (!replayRecord(type, in)) return;
+            } catch (EOFException e) {
+                System.out.println("trace ends mid-record, the recording was cut off");
+                return;
+            } catch (IOException e) {
+                System.out.println("damaged record (" + e.getMessage() + "), stopping");
+                return;
+            }
+        }
+    }
+
+    // False if the rest of the file can't be read
+    private boolean replayRecord(byte type, DataInputStream in) throws IOException {
+        switch (type) {
+            case TraceFormat.RECORD_CONFIG:
+                detector = new TapDetector(in.readInt(), in.readFloat(), in.readFloat(), in.readLong(), in.readLong());
+                if (verbose) System.out.println("config: mode " + detector.getMode() + ", slop " + detector.getTouchSlop());
+                return true;
+            case TraceFormat.RECORD_TOUCH:
+                replayTouch(in.readByte(), in.readFloat(), in.readFloat(), in.readLong(), in.readBoolean());
+                return true;
+            case TraceFormat.RECORD_LONG_PRESS:
+                replayLongPress(in.readLong(), in.readBoolean());
+                return true;
+            case TraceFormat.RECORD_SELECTION:
+                replaySelection(in);
+                return true;
+            default:
+                // records carry no length, so nothing after this can be trusted
+                System.out.println("unknown record type " + type + ", stopping (damaged or newer trace?)");
+                return false;
+        }
+    }
+
+    private void replayTouch(int action, float x, float y, long eventTime, boolean recorded) {
+        if (detector == null) {
+            untracedTouches++;
+            return;
+        }
+        touches++;
+        boolean fired = detector.onTouchEvent(action, x, y, eventTime);
+        if (fired) taps++;
+        if (fired != recorded) {
+            touchMismatches++;
+            if (verbose) {
+                System.out.println("touch @" + eventTime + " action " + action + " (" + x + ", " + y + "): recorded "
+                        + recorded + ", replayed " + fired);
+            }
+        }
+    }
+
+    private void replayLongPress(long uptime, boolean recorded) {
+        if (detector == null) return;
+        longPressChecks++;
+        boolean fired = detector.checkLongPress(uptime);
+        if (fired) taps++;
+        if (fired != recorded) {
+            longPressMismatches++;
+            if (verbose) System.out.println("long press @" + uptime + ": recorded " + recorded + ", replayed " + fired);
+        }
+    }
+
+    private void replaySelection(DataInputStream in) throws IOException {
+        long uptime = in.readLong();
+        long captureNanos = in.readLong();
+        long scoreNanos = in.readLong();
+        long knownScore = in.readLong();
+        TreeSnapshot<Object> snapshot = TreeSnapshot.readFrom(in);
+        int recordedBest = in.readInt();
+        long recordedScore = in.readLong();
+
+        long[] runs = new long[repeat];
+        for (int i = 0; i < repeat; i++) {
+            long start = System.nanoTime();
+            snapshot.score();
+            runs[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(runs);
+
+        int n = selections++;
+        if (n == replayScore.length) {
+            deviceCapture = Arrays.copyOf(deviceCapture, n * 2);
+            deviceScore = Arrays.copyOf(deviceScore, n * 2);
+            replayScore = Arrays.copyOf(replayScore, n * 2);
+        }
+        deviceCapture[n] = captureNanos;
+        deviceScore[n] = scoreNanos;
+        replayScore[n] = runs[repeat / 2];
+
+        boolean differs = snapshot.getBest() != recordedBest || snapshot.getBestScore() != recordedScore;
+        if (differs) selectionMismatches++;
+        if (verbose || differs) {
+            System.out.println("selection @" + uptime + ": " + snapshot.size() + " nodes, "
+                    + snapshot.getCandidateCount() + " scrollables, memo score " + knownScore
+                    + "; recorded #" + recordedBest + " (" + recordedScore + "), replayed #"
+                    + snapshot.getBest() + " (" + snapshot.getBestScore() + ")");
+        }
+    }
+
+    private void report() {
+        System.out.println();
+        System.out.println("touches: " + touches + " replayed, " + touchMismatches + " decided differently"
+                + (untracedTouches > 0 ? ", " + untracedTouches + " before the first config skipped" : ""));
+        System.out.println("long-press checks: " + longPressChecks + ", " + longPressMismatches + " decided differently");
+        System.out.println("taps fired on replay: " + taps);
+        System.out.println("selections: " + selections + ", " + selectionMismatches + " picked a different target");
+        if (selections == 0) return;
+        System.out.println("  device capture  " + summary(deviceCapture, selections));
+        System.out.println("  device score    " + summary(deviceScore, selections));
+        System.out.println("  replay score    " + summary(replayScore, selections));
+    }
+
+    private static String summary(long[] nanos, int count) {
+        long[] sorted = Arrays.copyOf(nanos, count);
+        Arrays.sort(sorted);
+        return "p50 " + sorted[count / 2] / 1000 + "us, p90 " + sorted[Math.min(count - 1, count * 9 / 10)] / 1000
+                + "us, max " + sorted[count - 1] / 1000 + "us";
+    }
+}
@@ -0,0 +1,19 @@
+package com.yourdomain.statusbarscroll.core;
+
+// What the scrollable search needs to know about a node. The module adapts android.view.View;
+// benchmarks and replay tools can adapt plain objects and run the same search on a desktop JVM.
+public interface TreeAdapter<N> {
+
+    int childCount(N node);
+
+    N childAt(N node, int index);
+
+    // False for GONE/INVISIBLE or zero-size nodes; their whole subtree is skipped
+    boolean isWorthVisiting(N node);
+
+    // False if the child is laid out entirely outside the parent's visible area
+    boolean isInsideParent(N parent, N child);
+
+    // One of the ScrollKind constants
+    int scrollKind(N node);
+}
@@ -0,0 +1,29 @@
+package com.yourdomain.statusbarscroll.core;
+
+// How scrollables are ranked, and how much of a hierarchy a snapshot copies by default.
+// TreeSnapshot scores its captured candidates with score(); the app-side registry scores its
+// live views with the same rule, so both sides pick alike.
+public final class TreeScoring {
+
+    public static final int DEFAULT_NODE_BUDGET = 5000;
+    public static final long DEFAULT_TIME_BUDGET_NANOS = 8000000L; // 8ms, half a frame at 60Hz
+
+    // A scroller that only moves sideways scores this many times less than its area says
+    public static final int HORIZONTAL_ONLY_DIVISOR = 8;
+
+    private TreeScoring() { }
+
+    // Visible area first; focus and elevation each add another multiple of it, so a focused or
+    // raised surface (dialog, bottom sheet) beats a larger list it covers. Nothing visible scores 0.
+    public static long score(long visibleArea, boolean focused, boolean raised) {
+        if (visibleArea <= 0) return 0;
+        return visibleArea * (1 + (focused ? 1 : 0) + (raised ? 1 : 0));
+    }
+
+    // As above, but a horizontal-only scroller (carousel, tab strip) loses to any vertical one
+    // of a sensible size next to it, while still scoring above 0 when it is all there is
+    public static long score(long visibleArea, boolean focused, boolean raised, boolean horizontalOnly) {
+        long score = score(visibleArea, focused, raised);
+        return horizontalOnly ? Math.max(score > 0 ? 1 : 0, score / HORIZONTAL_ONLY_DIVISOR) : score;
+    }
+}
@@ -0,0 +1,385 @@
+package com.yourdomain.statusbarscroll.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Flattened copy of one or more window hierarchies, taken in a single UI-thread pass and
+// scored later on any thread. Nodes are stored in pre-order as rows of primitive arrays
+// (parent index, kind, flags, raw geometry); only root and scrollable nodes keep a
+// reference to the original object, so the caller can act on the winner.
+// The walk prunes hidden subtrees, children outside their parent and the inside of
+// scrollables: none of them is ever copied. A carousel nested in a list is therefore
+// never seen, but one next to it is: scrollables that only scroll sideways are flagged at
+// capture and score lower, so the vertical list wins. Arrays only grow, so a warm capture
+// allocates nothing.
+// Threading: capture and the reference accessors on the UI thread, score() on a worker;
+// the caller hands the snapshot over through a Handler (or anything else that publishes it).
+// writeTo/readFrom move the captured rows through a trace, so a recorded snapshot can be
+// scored again off-device (see TraceReplay).
+public final class TreeSnapshot<N> {
+
+    private static final int GEOMETRY = 6; // left, top, right, bottom, scrollX, scrollY
+
+    // readFrom refuses anything larger: no device has that many windows, and no budget lets
+    // a capture copy that many nodes
+    private static final int MAX_READ_ROOTS = 256;
+    private static final int MAX_READ_NODES = 1 << 20;
+
+    private static final byte FLAG_FOCUSED = 1;        // the node holds focus (captured)
+    private static final byte FLAG_RAISED = 2;         // the node has elevation (captured)
+    private static final byte FLAG_FOCUS_WITHIN = 4;   // the node or a descendant holds focus (scored)
+    private static final byte FLAG_RAISED_WITHIN = 8;  // the node or an ancestor is raised (scored)
+    private static final byte FLAG_HORIZONTAL = 16;    // a scrollable that only scrolls sideways (captured)
+
+    private final SnapshotAdapter<N> adapter;
+    private int nodeBudget = TreeScoring.DEFAULT_NODE_BUDGET;
+    private long timeBudgetNanos = TreeScoring.DEFAULT_TIME_BUDGET_NANOS;
+
+    // Per node, in pre-order
+    private int size;
+    private int[] parent = new int[256];
+    private int[] rootOf = new int[256];
+    private int[] kind = new int[256];
+    private byte[] flags = new byte[256];
+    private int[] geometry = new int[256 * GEOMETRY];
+
+    // Per root
+    private int rootCount;
+    private Object[] roots = new Object[8];
+    private int[] rootOrigin = new int[8 * 2];
+    private boolean[] rootWindowFocused = new boolean[8];
+    private boolean[] rootTruncated = new boolean[8];
+
+    // Per scrollable node
+    private int candidateCount;
+    private int[] candidateNode = new int[32];
+    private Object[] candidateRefs = new Object[32];
+
+    // Capture scratch: pending nodes and the index of their parent row
+    private Object[] stack = new Object[64];
+    private int[] stackParent = new int[64];
+
+    // Score results
+    private int[] screen = new int[256 * 2]; // screen position of each node's top-left
+    private int[] clip = new int[256 * 4];   // screen-space visible rect of each node
+    private int[] rootBest = new int[8];
+    private long[] rootBestScore = new long[8];
+    private int best = -1;
+    private long bestScore;
+
+    public TreeSnapshot(SnapshotAdapter<N> adapter) {
+        this.adapter = adapter;
+    }
+
+    public void setNodeBudget(int nodeBudget) {
+        this.nodeBudget = nodeBudget > 0 ? nodeBudget : TreeScoring.DEFAULT_NODE_BUDGET;
+    }
+
+    public void setTimeBudgetNanos(long timeBudgetNanos) {
+        this.timeBudgetNanos = timeBudgetNanos > 0 ? timeBudgetNanos : TreeScoring.DEFAULT_TIME_BUDGET_NANOS;
+    }
+
+    // Starts a new snapshot; drops the references of the previous one
+    public void reset() {
+        clearRefs();
+        size = 0;
+        rootCount = 0;
+        candidateCount = 0;
+        best = -1;
+        bestScore = 0;
+    }
+
+    // Copies root's hierarchy as the next root, placed at (screenX, screenY). The node budget
+    // is shared by all roots of a snapshot. Returns the root's index.
+    @SuppressWarnings("unchecked")
+    public int capture(N root, int screenX, int screenY, boolean windowFocused) {
+        int r = rootCount++;
+        if (r == roots.length) growRoots();
+        roots[r] = root;
+        rootOrigin[r * 2] = screenX;
+        rootOrigin[r * 2 + 1] = screenY;
+        rootWindowFocused[r] = windowFocused;
+        rootTruncated[r] = false;
+        if (root == null || !adapter.isWorthVisiting(root)) return r;
+
+        // may wrap for a huge budget; compared by difference, like nanoTime() itself must be
+        long deadline = System.nanoTime() + timeBudgetNanos;
+        int visited = 0;
+        int top = 0;
+        stack[top] = root;
+        stackParent[top++] = -1;
+        try {
+            while (top > 0) {
+                N node = (N) stack[--top];
+                int p = stackParent[top];
+                stack[top] = null;
+
+                if (size >= nodeBudget
+                        || (visited % 32 == 0 && visited > 0 && System.nanoTime() - deadline > 0)) {
+                    rootTruncated[r] = true;
+                    return r;
+                }
+                visited++;
+
+                int i = size++;
+                if (i == parent.length) growNodes();
+                parent[i] = p;
+                rootOf[i] = r;
+                int k = adapter.scrollKind(node);
+                kind[i] = k;
+                byte f = 0;
+                if (adapter.isFocusedNode(node)) f |= FLAG_FOCUSED;
+                if (adapter.hasElevation(node)) f |= FLAG_RAISED;
+                flags[i] = f;
+                adapter.readGeometry(node, geometry, i * GEOMETRY);
+
+                if (k != ScrollKind.NONE) {
+                    if (adapter.isHorizontalOnly(node)) flags[i] |= FLAG_HORIZONTAL;
+                    int c = candidateCount++;
+                    if (c == candidateNode.length) growCandidates();
+                    candidateNode[c] = i;
+                    candidateRefs[c] = node;
+                    continue;
+                }
+
+                int childCount = adapter.childCount(node);
+                if (childCount == 0) continue;
+                if (top + childCount > stack.length) growStack(top + childCount);
+                // push in reverse so the first child is copied first
+                for (int j = childCount - 1; j >= 0; j--) {
+                    N child = adapter.childAt(node, j);
+                    if (child != null && adapter.isWorthVisiting(child) && adapter.isInsideParent(node, child)) {
+                        stack[top] = child;
+                        stackParent[top++] = i;
+                    }
+                }
+            }
+            return r;
+        } finally {
+            while (top > 0) stack[--top] = null;
+        }
+    }
+
+    // Works out where every node is on screen, clips it by its ancestors and scores each
+    // scrollable with TreeScoring.score. Touches only primitive arrays: safe on a worker thread
+    // once the snapshot has been handed over.
+    public void score() {
+        best = -1;
+        bestScore = 0;
+        if (rootBest.length < rootCount) {
+            rootBest = new int[roots.length];
+            rootBestScore = new long[roots.length];
+        }
+        Arrays.fill(rootBest, 0, rootCount, -1);
+        Arrays.fill(rootBestScore, 0, rootCount, 0);
+        if (screen.length < size * 2) {
+            screen = new int[parent.length * 2];
+            clip = new int[parent.length * 4];
+        }
+
+        for (int i = 0; i < size; i++) flags[i] &= ~(FLAG_FOCUS_WITHIN | FLAG_RAISED_WITHIN);
+        // focus of a subtree: children come after their parent, so walk backwards
+        for (int i = size - 1; i >= 0; i--) {
+            if ((flags[i] & FLAG_FOCUSED) != 0) flags[i] |= FLAG_FOCUS_WITHIN;
+            int p = parent[i];
+            if (p >= 0 && (flags[i] & FLAG_FOCUS_WITHIN) != 0) flags[p] |= FLAG_FOCUS_WITHIN;
+        }
+
+        for (int i = 0; i < size; i++) {
+            int g = i * GEOMETRY;
+            int width = geometry[g + 2] - geometry[g];
+            int height = geometry[g + 3] - geometry[g + 1];
+            int p = parent[i];
+            int x;
+            int y;
+            if (p < 0) {
+                x = rootOrigin[rootOf[i] * 2];
+                y = rootOrigin[rootOf[i] * 2 + 1];
+            } else {
+                // parent's screen position minus its scroll gives the origin of its content
+                x = screen[p * 2] - geometry[p * GEOMETRY + 4] + geometry[g];
+                y = screen[p * 2 + 1] - geometry[p * GEOMETRY + 5] + geometry[g + 1];
+            }
+            screen[i * 2] = x;
+            screen[i * 2 + 1] = y;
+
+            int c = i * 4;
+            clip[c] = x;
+            clip[c + 1] = y;
+            clip[c + 2] = x + width;
+            clip[c + 3] = y + height;
+            if (p >= 0) {
+                int pc = p * 4;
+                clip[c] = Math.max(clip[c], clip[pc]);
+                clip[c + 1] = Math.max(clip[c + 1], clip[pc + 1]);
+                clip[c + 2] = Math.min(clip[c + 2], clip[pc + 2]);
+                clip[c + 3] = Math.min(clip[c + 3], clip[pc + 3]);
+                if ((flags[p] & FLAG_RAISED_WITHIN) != 0) flags[i] |= FLAG_RAISED_WITHIN;
+            }
+            if ((flags[i] & FLAG_RAISED) != 0) flags[i] |= FLAG_RAISED_WITHIN;
+        }
+
+        // candidates are in pre-order and roots in window order, so ">=" lets the upper one win ties
+        for (int s = 0; s < candidateCount; s++) {
+            int i = candidateNode[s];
+            int c = i * 4;
+            long area = (long) Math.max(0, clip[c + 2] - clip[c]) * Math.max(0, clip[c + 3] - clip[c + 1]);
+            int r = rootOf[i];
+            boolean focused = rootWindowFocused[r] || (flags[i] & FLAG_FOCUS_WITHIN) != 0;
+            long score = TreeScoring.score(area, focused, (flags[i] & FLAG_RAISED_WITHIN) != 0,
+                    (flags[i] & FLAG_HORIZONTAL) != 0);
+            if (score <= 0) continue;
+            if (score >= rootBestScore[r]) {
+                rootBest[r] = s;
+                rootBestScore[r] = score;
+            }
+            if (score >= bestScore) {
+                best = s;
+                bestScore = score;
+            }
+        }
+    }
+
+    // Nodes copied by the last capture (all roots)
+    public int size() {
+        return size;
+    }
+
+    public int getCandidateCount() {
+        return candidateCount;
+    }
+
+    public int getRootCount() {
+        return rootCount;
+    }
+
+    @SuppressWarnings("unchecked")
+    public N rootAt(int r) {
+        return (N) roots[r];
+    }
+
+    // True if the root's capture ran out of budget; its result may not be its real best
+    public boolean isRootTruncated(int r) {
+        return rootTruncated[r];
+    }
+
+    // Candidate index of the best scrollable of root r, or -1
+    public int getRootBest(int r) {
+        return rootBest[r];
+    }
+
+    public long getRootBestScore(int r) {
+        return rootBestScore[r];
+    }
+
+    // Candidate index of the best scrollable overall, or -1
+    public int getBest() {
+        return best;
+    }
+
+    public long getBestScore() {
+        return bestScore;
+    }
+
+    @SuppressWarnings("unchecked")
+    public N candidateAt(int s) {
+        return (N) candidateRefs[s];
+    }
+
+    // Drops every object reference, keeping the primitive rows (and results) for inspection
+    public void clearRefs() {
+        Arrays.fill(roots, 0, rootCount, null);
+        Arrays.fill(candidateRefs, 0, candidateCount, null);
+    }
+
+    // Writes the captured rows, without object references or score results
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(rootCount);
+        for (int r = 0; r < rootCount; r++) {
+            out.writeInt(rootOrigin[r * 2]);
+            out.writeInt(rootOrigin[r * 2 + 1]);
+            out.writeBoolean(rootWindowFocused[r]);
+            out.writeBoolean(rootTruncated[r]);
+        }
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeInt(parent[i]);
+            out.writeInt(rootOf[i]);
+            out.writeByte(kind[i]);
+            out.writeByte(flags[i] & (FLAG_FOCUSED | FLAG_RAISED | FLAG_HORIZONTAL));
+            for (int g = i * GEOMETRY, end = g + GEOMETRY; g < end; g++) out.writeInt(geometry[g]);
+        }
+        out.writeInt(candidateCount);
+        for (int c = 0; c < candidateCount; c++) out.writeInt(candidateNode[c]);
+    }
+
+    // Reads rows written by writeTo. The result can be scored, but has no adapter to capture
+    // with and no references: rootAt/candidateAt return null. Throws if a count or an index
+    // is out of range, which is what reading from the wrong offset of a damaged trace gives,
+    // instead of allocating for it or failing later in score().
+    public static <N> TreeSnapshot<N> readFrom(DataInput in) throws IOException {
+        TreeSnapshot<N> s = new TreeSnapshot<>(null);
+        int roots = checkRange(in.readInt(), 0, MAX_READ_ROOTS, "root count");
+        while (s.roots.length < roots) s.growRoots();
+        for (int r = 0; r < roots; r++) {
+            s.rootOrigin[r * 2] = in.readInt();
+            s.rootOrigin[r * 2 + 1] = in.readInt();
+            s.rootWindowFocused[r] = in.readBoolean();
+            s.rootTruncated[r] = in.readBoolean();
+        }
+        s.rootCount = roots;
+        int size = checkRange(in.readInt(), 0, MAX_READ_NODES, "node count");
+        while (s.parent.length < size) s.growNodes();
+        for (int i = 0; i < size; i++) {
+            // pre-order: a parent always comes first
+            s.parent[i] = checkRange(in.readInt(), -1, i - 1, "parent");
+            s.rootOf[i] = checkRange(in.readInt(), 0, roots - 1, "root");
+            s.kind[i] = checkRange(in.readByte(), 0, ScrollKind.COUNT - 1, "kind");
+            s.flags[i] = in.readByte();
+            for (int g = i * GEOMETRY, end = g + GEOMETRY; g < end; g++) s.geometry[g] = in.readInt();
+        }
+        s.size = size;
+        int candidates = checkRange(in.readInt(), 0, size, "candidate count");
+        while (s.candidateNode.length < candidates) s.growCandidates();
+        for (int c = 0; c < candidates; c++) s.candidateNode[c] = checkRange(in.readInt(), 0, size - 1, "candidate");
+        s.candidateCount = candidates;
+        return s;
+    }
+
+    private static int checkRange(int value, int min, int max, String what) throws IOException {
+        if (value < min || value > max) throw new IOException("implausible " + what + " " + value + " in snapshot");
+        return value;
+    }
+
+    private void growNodes() {
+        int n = parent.length * 2;
+        parent = Arrays.copyOf(parent, n);
+        rootOf = Arrays.copyOf(rootOf, n);
+        kind = Arrays.copyOf(kind, n);
+        flags = Arrays.copyOf(flags, n);
+        geometry = Arrays.copyOf(geometry, n * GEOMETRY);
+    }
+
+    private void growRoots() {
+        int n = roots.length * 2;
+        roots = Arrays.copyOf(roots, n);
+        rootOrigin = Arrays.copyOf(rootOrigin, n * 2);
+        rootWindowFocused = Arrays.copyOf(rootWindowFocused, n);
+        rootTruncated = Arrays.copyOf(rootTruncated, n);
+    }
+
+    private void growCandidates() {
+        int n = candidateNode.length * 2;
+        candidateNode = Arrays.copyOf(candidateNode, n);
+        candidateRefs = Arrays.copyOf(candidateRefs, n);
+    }
+
+    private void growStack(int required) {
+        int n = stack.length;
+        while (n < required) n *= 2;
+        stack = Arrays.copyOf(stack, n);
+        stackParent = Arrays.copyOf(stackParent, n);
+    }
+}